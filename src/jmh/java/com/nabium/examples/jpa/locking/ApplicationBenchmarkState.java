@@ -0,0 +1,82 @@
+package com.nabium.examples.jpa.locking;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+/**
+ * Base state of benchmarks which starts {@link ExampleApplication} with
+ * embedded H2 and loads {@code setup_states.sql}.
+ *
+ * <p>
+ * Subclasses may add or override command line style properties by overriding
+ * {@link #properties()}, start the web server by overriding
+ * {@link #webApplicationType()} and get beans after
+ * {@link #setUpApplication()}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+public abstract class ApplicationBenchmarkState {
+
+    private static final String[] DEFAULT_PROPERTIES = {
+            // every contending thread needs its own connection
+            "--spring.datasource.hikari.maximum-pool-size=64",
+            // SQL logging of src/test/resources/application.properties would dominate
+            "--logging.level.org.hibernate.SQL=WARN",
+            "--logging.level.root=WARN",
+    };
+
+    protected ConfigurableApplicationContext context;
+
+    @Setup
+    public void setUpApplication() {
+        context = new SpringApplicationBuilder(ExampleApplication.class)
+                .web(webApplicationType())
+                .run(mergeProperties(DEFAULT_PROPERTIES, properties()));
+
+        new ResourceDatabasePopulator(new ClassPathResource("/setup_states.sql"))
+                .execute(context.getBean(DataSource.class));
+    }
+
+    @TearDown
+    public void tearDownApplication() {
+        context.close();
+    }
+
+    protected String[] properties() {
+        return ArrayUtils.EMPTY_STRING_ARRAY;
+    }
+
+    protected WebApplicationType webApplicationType() {
+        return WebApplicationType.NONE;
+    }
+
+    protected <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * Properties of {@code overrides} replace the defaults of the same name,
+     * Spring Boot would join repeated command line properties with commas.
+     */
+    private static String[] mergeProperties(String[] defaults, String[] overrides) {
+        Map<String, String> merged = new LinkedHashMap<>();
+        for (String property : ArrayUtils.addAll(defaults, overrides)) {
+            merged.put(StringUtils.substringBefore(property, "="), property);
+        }
+        return merged.values().toArray(String[]::new);
+    }
+}
@@ -0,0 +1,56 @@
+package com.nabium.examples.jpa.locking;
+
+import java.util.Arrays;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs JMH benchmarks once per number of contending threads.
+ *
+ * <p>
+ * The first argument is the regular expression of benchmarks to include.
+ * Thread counts are taken from the system property {@code jmh.threads}, comma
+ * separated, {@code 1,4,16,64} by default. If it is blank, the thread count
+ * declared by each benchmark is used. Profilers, such as {@code gc}, are
+ * taken from {@code jmh.prof}, comma separated.
+ * </p>
+ *
+ * <p>
+ * Results of each run are written to {@code target/jmh-<threads>.json}.
+ * </p>
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : ".*Benchmark.*";
+        String threads = System.getProperty("jmh.threads", "1,4,16,64");
+
+        if (StringUtils.isBlank(threads)) {
+            new Runner(options(include).result("target/jmh.json").build()).run();
+            return;
+        }
+
+        int[] threadCounts = Arrays.stream(threads.split(",")).map(String::trim).mapToInt(Integer::parseInt)
+                .toArray();
+        for (int count : threadCounts) {
+            new Runner(options(include).threads(count).result("target/jmh-" + count + ".json").build()).run();
+        }
+    }
+
+    private static ChainedOptionsBuilder options(String include) {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(include)
+                .resultFormat(ResultFormatType.JSON)
+                // devtools would try to restart the forked JVM
+                .jvmArgsAppend("-Dspring.devtools.restart.enabled=false");
+        for (String profiler : StringUtils.split(System.getProperty("jmh.prof", ""), ",")) {
+            options.addProfiler(profiler.trim());
+        }
+        return options;
+    }
+}
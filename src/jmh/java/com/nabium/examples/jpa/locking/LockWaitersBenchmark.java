@@ -0,0 +1,117 @@
+package com.nabium.examples.jpa.locking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Cost of many requests waiting for the same row lock, each in its own
+ * platform or virtual thread.
+ *
+ * <p>
+ * Each operation submits {@code waiters} tasks which lock the same row and
+ * hold the lock for a moment, as {@code PUT /state/{id}} requests for a hot id
+ * do, and waits for all of them. Platform threads are created on demand like
+ * the request threads of Tomcat. Run with {@code -prof gc} to compare
+ * allocation, and with {@code -Djmh.threads=} so that only one thread fans
+ * out.
+ * </p>
+ *
+ * <p>
+ * The pool has a connection for every waiter, so that the time is spent
+ * waiting for the row lock rather than for a connection.
+ * </p>
+ *
+ * <p>
+ * {@code executor=virtual} requires Java 21, build and run with the
+ * {@code java21} profile on a Java 21 JDK. It fails on older JVMs.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(1)
+public class LockWaitersBenchmark extends ApplicationBenchmarkState {
+
+    @Param({ "platform", "virtual" })
+    private String executor;
+
+    @Param({ "100", "1000" })
+    private int waiters;
+
+    @Param("CA")
+    private String stateId;
+
+    private StateRepository repo;
+
+    private TransactionTemplate txTemplate;
+
+    private ExecutorService executorService;
+
+    @Override
+    protected String[] properties() {
+        return new String[] {
+                // H2 gives up a lock wait after 2 seconds by default
+                "--spring.datasource.url=jdbc:h2:mem:bench;LOCK_TIMEOUT=60000;DB_CLOSE_ON_EXIT=FALSE",
+                // no waiter queues for a connection
+                "--spring.datasource.hikari.maximum-pool-size=" + waiters,
+                "--spring.datasource.hikari.minimum-idle=" + waiters
+        };
+    }
+
+    @Setup
+    public void setUp() {
+        repo = getBean(StateRepository.class);
+        txTemplate = getBean(TransactionTemplate.class);
+        executorService = "virtual".equals(executor)
+                ? ConcurrentTestMixin.newVirtualThreadPerTaskExecutor()
+                : Executors.newCachedThreadPool();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        executorService.shutdownNow();
+        executorService.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public int lockHotRow() throws Exception {
+        List<Future<?>> futures = new ArrayList<>(waiters);
+        for (int i = 0; i < waiters; i++) {
+            futures.add(executorService.submit(() -> txTemplate.executeWithoutResult(tx -> {
+                repo.findForUpdateById(stateId).orElseThrow();
+                sleepInLock();
+            })));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        return futures.size();
+    }
+
+    private static void sleepInLock() {
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
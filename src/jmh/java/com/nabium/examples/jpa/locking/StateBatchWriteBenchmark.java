@@ -0,0 +1,130 @@
+package com.nabium.examples.jpa.locking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Bulk writes of {@code rows} synthetic states through
+ * {@link StateRepository#saveAll(Iterable)} with embedded H2.
+ *
+ * <p>
+ * {@code config=unbatched} writes every row with its own statement,
+ * {@code default} uses {@code application.properties} and
+ * {@code performance} the {@code performance} profile. The writes are flushed
+ * and rolled back, so every operation writes the same rows. Run against
+ * PostgreSQL or MySQL with {@code -Dspring.datasource.url=} to see the effect
+ * of the round trips saved.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StateBatchWriteBenchmark extends ApplicationBenchmarkState {
+
+    private static final String DIGITS = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+    @Param({ "unbatched", "default", "performance" })
+    private String config;
+
+    @Param({ "100", "1000" })
+    private int rows;
+
+    private StateRepository repo;
+
+    private TransactionTemplate txTemplate;
+
+    private List<String> ids;
+
+    private List<String> newIds;
+
+    private final AtomicLong updates = new AtomicLong();
+
+    @Override
+    protected String[] properties() {
+        return switch (config) {
+            case "unbatched" -> new String[] { "--spring.jpa.properties.hibernate.jdbc.batch_size=1" };
+            case "performance" -> new String[] { "--spring.profiles.active=performance" };
+            default -> new String[0];
+        };
+    }
+
+    @Setup
+    public void setUp() {
+        repo = getBean(StateRepository.class);
+        txTemplate = getBean(TransactionTemplate.class);
+
+        // ids and codes with a lower case letter do not collide with the real states
+        ids = new ArrayList<>();
+        for (int i = 0; ids.size() < rows; i++) {
+            String id = "" + DIGITS.charAt(i / DIGITS.length()) + DIGITS.charAt(i % DIGITS.length());
+            if (!StringUtils.isNumeric(id)) {
+                ids.add(id);
+            }
+        }
+        // mixed case ids and codes do not collide with any other row
+        newIds = new ArrayList<>();
+        for (int i = 0; newIds.size() < rows; i++) {
+            char upper = (char) ('A' + i / 26 % 26);
+            char lower = (char) ('a' + i % 26);
+            newIds.add(i < 26 * 26 ? "" + upper + lower : "" + lower + upper);
+        }
+
+        List<Object[]> args = ids.stream()
+                .map(id -> new Object[] { id, "Synthetic " + id, id, "S." + id, CensusRegion.WEST.name() })
+                .toList();
+        getBean(JdbcTemplate.class).batchUpdate(
+                "INSERT INTO state (id, name, code, abbr, census_region, version) VALUES (?, ?, ?, ?, ?, 0)", args);
+    }
+
+    @Benchmark
+    public int bulkInsert() {
+        return txTemplate.execute(tx -> {
+            tx.setRollbackOnly();
+            List<State> states = new ArrayList<>(rows);
+            for (String newId : newIds) {
+                State state = new State();
+                state.setId(newId);
+                state.setName("Inserted " + newId);
+                state.setCode(newId);
+                state.setAbbr("I." + newId);
+                state.setCensusRegion(CensusRegion.SOUTH);
+                states.add(state);
+            }
+            repo.saveAll(states);
+            repo.flush();
+            return states.size();
+        });
+    }
+
+    @Benchmark
+    public int bulkUpdate() {
+        String suffix = " " + updates.incrementAndGet();
+        return txTemplate.execute(tx -> {
+            tx.setRollbackOnly();
+            List<State> states = repo.findAllById(ids);
+            for (State state : states) {
+                state.setName("Synthetic " + state.getId() + suffix);
+            }
+            repo.saveAll(states);
+            repo.flush();
+            return states.size();
+        });
+    }
+}
@@ -0,0 +1,120 @@
+package com.nabium.examples.jpa.locking;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Bursts of {@code GET /state/{id}} for a hot id which is not cached.
+ *
+ * <p>
+ * Each operation evicts the state and sends {@code callers} concurrent
+ * requests, as a burst after an update does, and waits for all of them. The
+ * cache misses per burst are printed for each iteration, they are the loads
+ * from the database: 1 when the misses are coalesced. Run with
+ * {@code -Djmh.threads=} so that only one thread sends bursts.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(1)
+public class StateControllerBurstBenchmark extends ApplicationBenchmarkState {
+
+    @Param({ "16", "128" })
+    private int callers;
+
+    @Param("CA")
+    private String stateId;
+
+    private HttpClient client;
+
+    private HttpRequest request;
+
+    private Cache cache;
+
+    private FunctionCounter misses;
+
+    private double missesBefore;
+
+    private long bursts;
+
+    @Override
+    protected String[] properties() {
+        return new String[] {
+                "--server.port=0",
+                "--server.tomcat.threads.max=" + callers,
+        };
+    }
+
+    @Override
+    protected WebApplicationType webApplicationType() {
+        return WebApplicationType.SERVLET;
+    }
+
+    @Setup
+    public void setUp() {
+        String port = context.getEnvironment().getProperty("local.server.port");
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/state/" + stateId)).build();
+        cache = getBean(CacheManager.class).getCache(CacheConfig.STATES);
+        misses = getBean(MeterRegistry.class).get("cache.gets")
+                .tag("cache", CacheConfig.STATES)
+                .tag("result", "miss")
+                .functionCounter();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        missesBefore = misses.count();
+        bursts = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownIteration() {
+        System.out.printf("%n%.2f misses per burst%n", bursts == 0 ? 0 : (misses.count() - missesBefore) / bursts);
+    }
+
+    @Benchmark
+    public int burst() {
+        cache.evict(stateId);
+        bursts++;
+
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(callers);
+        for (int i = 0; i < callers; i++) {
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            if (response.join().statusCode() != 200) {
+                throw new IllegalStateException("GET /state/" + stateId + ": " + response.join().statusCode());
+            }
+        }
+        return responses.size();
+    }
+}
@@ -0,0 +1,94 @@
+package com.nabium.examples.jpa.locking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Cost of reading managed {@link State} entities versus {@link StateView}
+ * projections with embedded H2, bypassing the caches of {@link StateService}.
+ *
+ * <p>
+ * Entities are read in a read-write transaction, as {@code getState} and
+ * {@code listStates} did, so each of them is snapshotted and dirty checked on
+ * flush. A single state is read by id in a read-only transaction and copied
+ * to a {@link StateView}, as the query of a projection costs more than the
+ * lookup by id. {@code extraStates} synthetic rows are added to the 56 states, to see
+ * how the cost grows with the table. Run with {@code -Djmh.prof=gc} to compare
+ * allocations per operation.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StateReadBenchmark extends ApplicationBenchmarkState {
+
+    private static final String DIGITS = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+    @Param("CA")
+    private String stateId;
+
+    @Param({ "0", "1000" })
+    private int extraStates;
+
+    private StateRepository repo;
+
+    private TransactionTemplate txTemplate;
+
+    private TransactionTemplate readOnlyTxTemplate;
+
+    @Setup
+    public void setUp() {
+        repo = getBean(StateRepository.class);
+        txTemplate = getBean(TransactionTemplate.class);
+        readOnlyTxTemplate = new TransactionTemplate(txTemplate.getTransactionManager());
+        readOnlyTxTemplate.setReadOnly(true);
+
+        // ids and codes with a lower case letter do not collide with the real states
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; rows.size() < extraStates; i++) {
+            String id = "" + DIGITS.charAt(i / DIGITS.length()) + DIGITS.charAt(i % DIGITS.length());
+            if (StringUtils.isNumeric(id)) {
+                continue;
+            }
+            rows.add(new Object[] { id, "Synthetic " + id, id, "S." + id, CensusRegion.WEST.name() });
+        }
+        getBean(JdbcTemplate.class).batchUpdate(
+                "INSERT INTO state (id, name, code, abbr, census_region, version) VALUES (?, ?, ?, ?, ?, 0)", rows);
+    }
+
+    @Benchmark
+    public State getEntity() {
+        return txTemplate.execute(tx -> repo.findById(stateId).orElseThrow());
+    }
+
+    @Benchmark
+    public StateView getReadOnlyEntity() {
+        return readOnlyTxTemplate.execute(tx -> repo.findById(stateId).map(StateView::of).orElseThrow());
+    }
+
+    @Benchmark
+    public List<State> listEntities() {
+        return txTemplate.execute(tx -> repo.findAll());
+    }
+
+    @Benchmark
+    public List<StateView> listViews() {
+        return readOnlyTxTemplate.execute(tx -> repo.findViewsByOrderByIdAsc());
+    }
+}
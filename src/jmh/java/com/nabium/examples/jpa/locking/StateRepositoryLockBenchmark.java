@@ -0,0 +1,115 @@
+package com.nabium.examples.jpa.locking;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.dao.DataAccessException;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Cost of each lock variant of {@link StateRepository} with embedded H2.
+ *
+ * <p>
+ * All the threads lock the same row, each in its own transaction, so the
+ * number of threads is the number of contending transactions. Throughput and
+ * latency percentiles (p50, p99, p999 of {@code SampleTime}) are reported
+ * for each method.
+ * </p>
+ *
+ * <p>
+ * Remember that H2 runs every variant as plain {@code SELECT ... FOR UPDATE}
+ * (see README), the numbers tell the cost of the lock and of the transaction
+ * around it, not of {@code NOWAIT} or {@code SKIP LOCKED} themselves.
+ * </p>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StateRepositoryLockBenchmark extends ApplicationBenchmarkState {
+
+    /**
+     * Lock failures per thread, H2 gives up after 2 seconds.
+     */
+    @org.openjdk.jmh.annotations.State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Failures {
+        public long lockFailures;
+    }
+
+    @Param("CA")
+    private String stateId;
+
+    private StateRepository repo;
+
+    private TransactionTemplate txTemplate;
+
+    @Setup
+    public void setUp() {
+        repo = getBean(StateRepository.class);
+        txTemplate = getBean(TransactionTemplate.class);
+    }
+
+    @Benchmark
+    public Optional<State> findById(Failures failures) {
+        return lock(StateRepository::findById, failures);
+    }
+
+    @Benchmark
+    public Optional<State> findForUpdateById(Failures failures) {
+        return lock(StateRepository::findForUpdateById, failures);
+    }
+
+    @Benchmark
+    public Optional<State> findForShareById(Failures failures) {
+        return lock(StateRepository::findForShareById, failures);
+    }
+
+    @Benchmark
+    public Optional<State> findForUpdateNoWaitById(Failures failures) {
+        return lock(StateRepository::findForUpdateNoWaitById, failures);
+    }
+
+    @Benchmark
+    public Optional<State> findForShareNoWaitById(Failures failures) {
+        return lock(StateRepository::findForShareNoWaitById, failures);
+    }
+
+    @Benchmark
+    public Optional<State> findForUpdateSkipLockedById(Failures failures) {
+        return lock(StateRepository::findForUpdateSkipLockedById, failures);
+    }
+
+    @Benchmark
+    public Optional<State> findForShareSkipLockedById(Failures failures) {
+        return lock(StateRepository::findForShareSkipLockedById, failures);
+    }
+
+    @Benchmark
+    public Optional<State> findForUpdateWithTimeoutById(Failures failures) {
+        return lock(StateRepository::findForUpdateWithTimeoutById, failures);
+    }
+
+    private Optional<State> lock(BiFunction<StateRepository, String, Optional<State>> method, Failures failures) {
+        try {
+            return txTemplate.execute(tx -> method.apply(repo, stateId));
+        } catch (DataAccessException | TransactionException e) {
+            failures.lockFailures++;
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.nabium.examples.jpa.locking;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Throughput of {@code StateService.updateState} on a hot state with and
+ * without the in-process locks of {@link StripedStateLockAspect}.
+ *
+ * <p>
+ * Connection pool usage of each iteration is printed from the HikariCP
+ * metrics: the mean time a connection was held per update, and the mean time
+ * waited for one. Without the local locks, every contending thread holds a
+ * connection while it waits for the row lock.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StripedStateLockBenchmark extends ApplicationBenchmarkState {
+
+    @Param({ "true", "false" })
+    private boolean localLock;
+
+    @Param({ "64", "8" })
+    private int poolSize;
+
+    @Param("CA")
+    private String stateId;
+
+    private StateService service;
+
+    private MeterRegistry meterRegistry;
+
+    private State state;
+
+    private final AtomicLong updates = new AtomicLong();
+
+    private Snapshot usage;
+
+    private Snapshot acquire;
+
+    @Override
+    protected String[] properties() {
+        return new String[] {
+                "--state.local-lock.enabled=" + localLock,
+                "--spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                // H2 gives up a lock wait after 2 seconds by default
+                "--spring.datasource.url=jdbc:h2:mem:bench;LOCK_TIMEOUT=60000;DB_CLOSE_ON_EXIT=FALSE",
+        };
+    }
+
+    @Setup
+    public void setUp() {
+        service = getBean(StateService.class);
+        meterRegistry = getBean(MeterRegistry.class);
+
+        StateView view = service.getState(stateId);
+        state = new State();
+        state.setId(view.getId());
+        state.setCode(view.getCode());
+        state.setAbbr(view.getAbbr());
+        state.setCensusRegion(view.getCensusRegion());
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        usage = Snapshot.of(meterRegistry.get("hikaricp.connections.usage").timer());
+        acquire = Snapshot.of(meterRegistry.get("hikaricp.connections.acquire").timer());
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownIteration() {
+        System.out.printf("%nconnection held %.3f ms, waited %.3f ms per use%n",
+                usage.meanMillisSince(), acquire.meanMillisSince());
+    }
+
+    @Benchmark
+    public State updateHotState() {
+        // each update must change the row to be written
+        State update = new State();
+        update.setId(state.getId());
+        update.setName("California " + updates.incrementAndGet());
+        update.setCode(state.getCode());
+        update.setAbbr(state.getAbbr());
+        update.setCensusRegion(state.getCensusRegion());
+        return service.updateState(stateId, update);
+    }
+
+    private record Snapshot(Timer timer, long count, double totalMillis) {
+
+        static Snapshot of(Timer timer) {
+            return new Snapshot(timer, timer.count(), timer.totalTime(TimeUnit.MILLISECONDS));
+        }
+
+        double meanMillisSince() {
+            long uses = timer.count() - count;
+            return uses == 0 ? 0 : (timer.totalTime(TimeUnit.MILLISECONDS) - totalMillis) / uses;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.nabium.examples.r2dbc.locking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+
+import io.r2dbc.spi.ConnectionFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Reactive counterpart of {@code LockWaitersBenchmark}: {@code waiters}
+ * updates of the same state through {@link ReactiveStateService}, each waiting
+ * for the row lock, and waits for all of them.
+ *
+ * <p>
+ * {@code r2dbc-h2} blocks the subscribing thread, so the updates are
+ * subscribed on the bounded elastic scheduler with embedded H2. Run with
+ * {@code -Dspring.r2dbc.url=r2dbc:postgresql://...} to wait without threads
+ * on a non-blocking driver, and compare with
+ * {@code LockWaitersBenchmark} of the blocking JPA stack. Run with
+ * {@code -Djmh.threads=} so that only one thread fans out.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(1)
+public class ReactiveLockWaitersBenchmark {
+
+    @Param({ "100", "1000" })
+    private int waiters;
+
+    @Param("CA")
+    private String stateId;
+
+    private ConfigurableApplicationContext context;
+
+    private boolean blockingDriver;
+
+    private ReactiveStateService service;
+
+    private StateRow state;
+
+    private final AtomicLong updates = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        // H2 gives up a lock wait after 2 seconds by default
+        String url = System.getProperty("spring.r2dbc.url", "r2dbc:h2:mem:///bench;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=60000");
+        blockingDriver = url.startsWith("r2dbc:h2:");
+        context = new SpringApplicationBuilder(ReactiveExampleApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.r2dbc.url=" + url,
+                        "--spring.r2dbc.pool.max-size=64",
+                        "--logging.level.root=WARN");
+        new ResourceDatabasePopulator(new ClassPathResource("/setup_states.sql"))
+                .populate(context.getBean(ConnectionFactory.class))
+                .block();
+
+        service = context.getBean(ReactiveStateService.class);
+        state = service.getState(stateId).block();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long lockHotRow() {
+        List<Mono<StateRow>> monos = new ArrayList<>(waiters);
+        for (int i = 0; i < waiters; i++) {
+            // each update must change the row to be written
+            StateRow update = new StateRow();
+            update.setId(state.getId());
+            update.setName("California " + updates.incrementAndGet());
+            update.setCode(state.getCode());
+            update.setAbbr(state.getAbbr());
+            Mono<StateRow> mono = service.updateState(stateId, update);
+            monos.add(blockingDriver ? mono.subscribeOn(Schedulers.boundedElastic()) : mono);
+        }
+        return Flux.merge(monos).count().block();
+    }
+}
@@ -0,0 +1,43 @@
+package com.nabium.examples.jpa.locking;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * In-process cache of states.
+ *
+ * <p>
+ * Puts and evictions made in a transaction are applied only after the
+ * transaction commits, so a rolled back update neither evicts nor caches
+ * anything. The cache advice runs outside of the transaction advice, so that a
+ * hit does not begin a transaction.
+ * </p>
+ *
+ * <p>
+ * Hit and miss counters are exposed as the {@code cache.gets} metric.
+ * </p>
+ */
+@Configuration
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 10)
+public class CacheConfig {
+
+    /** States by id */
+    public static final String STATES = "states";
+
+    @Bean
+    public CacheManager cacheManager(
+            @Value("${state.cache.spec:maximumSize=1000,expireAfterWrite=10m,recordStats}") String spec) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCacheSpecification(spec);
+        cacheManager.setCacheNames(List.of(STATES));
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+}
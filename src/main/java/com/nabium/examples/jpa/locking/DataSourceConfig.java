@@ -0,0 +1,158 @@
+package com.nabium.examples.jpa.locking;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Partitions connections into a {@code read} pool for read-only transactions
+ * and a {@code write} pool for everything else, so that writers stuck behind
+ * lock waits cannot starve reads of connections.
+ *
+ * <p>
+ * Both pools connect with {@code spring.datasource.*} and are configured with
+ * {@code spring.datasource.hikari.*}, overridden by
+ * {@code state.datasource.write.*} and {@code state.datasource.read.*}, such
+ * as {@code maximum-pool-size}. Their metrics are tagged with
+ * {@code pool=write} and {@code pool=read}, such as
+ * {@code hikaricp.connections.pending} and
+ * {@code hikaricp.connections.acquire}.
+ * </p>
+ *
+ * <p>
+ * The {@code read} pool connects to a replica instead, if
+ * {@code state.datasource.replica.url} is set, with
+ * {@code state.datasource.replica.username} and
+ * {@code state.datasource.replica.password}. Read-only transactions, including
+ * the ones of repository methods called without a transaction, then read from
+ * the replica. {@link ReplicaLockGuardAspect} keeps {@code @Lock} methods off
+ * it. Reads which must see the latest commit, such as the loads of a cache,
+ * are routed by {@link #readFromPrimary(Supplier)} to a third
+ * {@code primary-read} pool connected to the primary, configured by
+ * {@code state.datasource.primary-read.*}. Without a replica, they use the
+ * {@code read} pool.
+ * </p>
+ *
+ * <p>
+ * The connection is taken from the pool on the first statement, when the
+ * read-only flag of the transaction is known. Enabled with
+ * {@code state.datasource.partitioned=true} or a replica.
+ * </p>
+ */
+@Configuration
+@Conditional(DataSourceConfig.RoutingCondition.class)
+public class DataSourceConfig {
+
+    public static final String WRITE = "write";
+
+    public static final String READ = "read";
+
+    public static final String PRIMARY_READ = "primary-read";
+
+    private static final ThreadLocal<Boolean> primary = new ThreadLocal<>();
+
+    @Bean
+    public HikariDataSource writeDataSource(DataSourceProperties properties, Environment env) {
+        return pool(properties, env, WRITE);
+    }
+
+    @Bean
+    public HikariDataSource readDataSource(DataSourceProperties properties, Environment env) throws Exception {
+        DataSourceProperties replica = Binder.get(env).bind("state.datasource.replica", DataSourceProperties.class)
+                .orElse(null);
+        if (replica == null || replica.getUrl() == null) {
+            return pool(properties, env, READ);
+        }
+        replica.afterPropertiesSet();
+        return pool(replica, env, READ);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "state.datasource.replica.url")
+    public HikariDataSource primaryReadDataSource(DataSourceProperties properties, Environment env) {
+        return pool(properties, env, PRIMARY_READ);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource writeDataSource, HikariDataSource readDataSource,
+            @Qualifier("primaryReadDataSource") ObjectProvider<HikariDataSource> primaryReadDataSource) {
+        PartitionRoutingDataSource routing = new PartitionRoutingDataSource();
+        routing.setTargetDataSources(Map.of(WRITE, writeDataSource, READ, readDataSource,
+                PRIMARY_READ, primaryReadDataSource.getIfAvailable(() -> readDataSource)));
+        routing.setDefaultTargetDataSource(writeDataSource);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    /**
+     * Runs {@code action} with the read-only transactions of this thread
+     * routed to the primary. The connection must not have been taken yet,
+     * it is taken on the first statement.
+     */
+    public static <T> T readFromPrimary(Supplier<T> action) {
+        Boolean previous = primary.get();
+        primary.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                primary.remove();
+            }
+        }
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, Environment env, String partition) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder binder = Binder.get(env);
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+        binder.bind("state.datasource." + partition, Bindable.ofInstance(dataSource));
+        dataSource.setPoolName(partition);
+        return dataSource;
+    }
+
+    static class RoutingCondition extends AnyNestedCondition {
+
+        RoutingCondition() {
+            super(ConfigurationPhase.REGISTER_BEAN);
+        }
+
+        @ConditionalOnProperty(name = "state.datasource.partitioned", havingValue = "true")
+        static class Partitioned {
+        }
+
+        @ConditionalOnProperty(name = "state.datasource.replica.url")
+        static class Replica {
+        }
+    }
+
+    private static class PartitionRoutingDataSource extends AbstractRoutingDataSource {
+
+        @Override
+        protected Object determineCurrentLookupKey() {
+            if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                return WRITE;
+            }
+            return primary.get() != null ? PRIMARY_READ : READ;
+        }
+    }
+}
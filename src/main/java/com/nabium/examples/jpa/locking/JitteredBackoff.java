@@ -0,0 +1,39 @@
+package com.nabium.examples.jpa.locking;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter.
+ *
+ * <p>
+ * The delay before {@code attempt} is a random duration between zero and
+ * {@code min(max, initial * 2^(attempt - 1))}, so that retrying transactions
+ * spread out instead of colliding again.
+ * </p>
+ *
+ * @param initial upper bound of the first delay
+ * @param max     upper bound of any delay
+ */
+record JitteredBackoff(Duration initial, Duration max) {
+
+    Duration delay(int attempt) {
+        long cap = Math.min(max.toMillis(), initial.toMillis() << Math.min(attempt - 1, 30));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(cap + 1));
+    }
+
+    /**
+     * Sleeps before {@code attempt}.
+     *
+     * @return {@code false} if interrupted, with the interrupt flag restored
+     */
+    boolean sleep(int attempt) {
+        try {
+            Thread.sleep(delay(attempt).toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
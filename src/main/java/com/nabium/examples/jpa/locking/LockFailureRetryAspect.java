@@ -0,0 +1,134 @@
+package com.nabium.examples.jpa.locking;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Retries methods annotated with {@link RetryOnLockFailure} on
+ * {@link PessimisticLockingFailureException}, which covers lock timeouts
+ * ({@code CannotAcquireLockException}) and deadlock victims.
+ *
+ * <p>
+ * Runs outside of the transaction, so each attempt replays the whole
+ * transaction after a jittered exponential backoff. A call inside of an
+ * existing transaction is not retried, the transaction is already doomed.
+ * Each method has its own {@link RetryCircuitBreaker}.
+ * </p>
+ *
+ * <p>
+ * Calls are counted by the {@code state.retry} counter, tagged by
+ * {@code method} and {@code outcome}: {@code recovered} after a retry,
+ * {@code exhausted} when all attempts failed and {@code shed} when the
+ * breaker did not allow a retry.
+ * </p>
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(LockFailureRetryAspect.ORDER)
+public class LockFailureRetryAspect {
+
+    public static final String METRIC = "state.retry";
+
+    /** Outside of caching and transactions */
+    static final int ORDER = Ordered.LOWEST_PRECEDENCE - 20;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Value("${state.retry.backoff:20ms}")
+    private Duration backoff;
+
+    @Value("${state.retry.max-backoff:500ms}")
+    private Duration maxBackoff;
+
+    @Value("${state.retry.max-concurrent:16}")
+    private int maxConcurrent;
+
+    @Value("${state.retry.failure-threshold:10}")
+    private int failureThreshold;
+
+    @Value("${state.retry.open-duration:5s}")
+    private Duration openDuration;
+
+    private final Map<Method, RetryCircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    @Around("@annotation(retryOnLockFailure)")
+    public Object retry(ProceedingJoinPoint joinPoint, RetryOnLockFailure retryOnLockFailure) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        RetryCircuitBreaker breaker = breakers.computeIfAbsent(method,
+                m -> new RetryCircuitBreaker(maxConcurrent, failureThreshold, openDuration));
+
+        PessimisticLockingFailureException failure;
+        try {
+            Object result = joinPoint.proceed();
+            breaker.onSuccess();
+            return result;
+        } catch (PessimisticLockingFailureException e) {
+            failure = e;
+        }
+
+        if (retryOnLockFailure.maxAttempts() <= 1) {
+            throw failure;
+        }
+        if (!breaker.tryAcquire()) {
+            count(method, "shed");
+            throw failure;
+        }
+        try {
+            JitteredBackoff jitteredBackoff = new JitteredBackoff(backoff, maxBackoff);
+            for (int attempt = 2;; attempt++) {
+                if (!jitteredBackoff.sleep(attempt - 1)) {
+                    throw failure;
+                }
+                try {
+                    Object result = joinPoint.proceed();
+                    breaker.onSuccess();
+                    count(method, "recovered");
+                    return result;
+                } catch (PessimisticLockingFailureException e) {
+                    failure = e;
+                    if (attempt >= retryOnLockFailure.maxAttempts()) {
+                        break;
+                    }
+                    log.debug("Retrying {} after attempt {}: {}", method.getName(), attempt, e.toString());
+                }
+            }
+        } finally {
+            breaker.release();
+        }
+
+        count(method, "exhausted");
+        if (breaker.onExhausted()) {
+            log.warn("Stopped retrying {} for {}, {} calls in a row failed on locks",
+                    method.getName(), openDuration, failureThreshold);
+        }
+        throw failure;
+    }
+
+    private void count(Method method, String outcome) {
+        meterRegistry.getObject().counter(METRIC, "method", method.getName(), "outcome", outcome).increment();
+    }
+}
@@ -0,0 +1,41 @@
+package com.nabium.examples.jpa.locking;
+
+import java.lang.reflect.Method;
+
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import jakarta.persistence.QueryHint;
+
+/**
+ * Reads lock hints of repository methods.
+ */
+final class LockHints {
+
+    static final String LOCK_TIMEOUT = "jakarta.persistence.lock.timeout";
+
+    static final String NO_WAIT = "0";
+
+    static final String SKIP_LOCKED = "-2";
+
+    static final String NONE = "none";
+
+    private LockHints() {
+    }
+
+    /**
+     * @return value of {@code jakarta.persistence.lock.timeout} of the method, or
+     *         {@link #NONE}
+     */
+    static String lockTimeout(Method method) {
+        QueryHints hints = AnnotationUtils.findAnnotation(method, QueryHints.class);
+        if (hints != null) {
+            for (QueryHint hint : hints.value()) {
+                if (LOCK_TIMEOUT.equals(hint.name())) {
+                    return hint.value();
+                }
+            }
+        }
+        return NONE;
+    }
+}
@@ -0,0 +1,108 @@
+package com.nabium.examples.jpa.locking;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Records the time spent in each {@code @Lock} method of
+ * {@link StateRepository} as the {@code state.lock.wait} timer.
+ *
+ * <p>
+ * The time includes the execution of the query, but on conflict it is
+ * dominated by the lock wait. Tags:
+ * </p>
+ *
+ * <ul>
+ * <li>{@code method}: name of the repository method</li>
+ * <li>{@code mode}: {@code LockModeType}</li>
+ * <li>{@code timeout}: value of {@code jakarta.persistence.lock.timeout}, or
+ * {@code none}</li>
+ * <li>{@code dialect}: Hibernate dialect, such as {@code PostgreSQLDialect}</li>
+ * <li>{@code outcome}: {@code success}, {@code skipped} when
+ * {@code SKIP LOCKED} returned nothing, {@code nowait_failed},
+ * {@code timeout} or {@code error}</li>
+ * </ul>
+ */
+@Aspect
+@Component
+@Order(LockMetricsAspect.ORDER)
+public class LockMetricsAspect {
+
+    public static final String METRIC = "state.lock.wait";
+
+    /** Outside of other advices on repositories, to include them in the time */
+    static final int ORDER = 100;
+
+    // providers, not to initialize them early while the aspect is created
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Autowired
+    private ObjectProvider<EntityManagerFactory> entityManagerFactory;
+
+    private volatile String dialect;
+
+    @Around("execution(* com.nabium.examples.jpa.locking.StateRepository.*(..))")
+    public Object recordLockWait(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Lock lock = AnnotationUtils.findAnnotation(method, Lock.class);
+        if (lock == null) {
+            return joinPoint.proceed();
+        }
+
+        String timeout = LockHints.lockTimeout(method);
+        String outcome = "error";
+        long started = System.nanoTime();
+        try {
+            Object result = joinPoint.proceed();
+            outcome = LockHints.SKIP_LOCKED.equals(timeout) && isEmpty(result) ? "skipped" : "success";
+            return result;
+        } catch (PessimisticLockingFailureException | QueryTimeoutException e) {
+            outcome = LockHints.NO_WAIT.equals(timeout) ? "nowait_failed" : "timeout";
+            throw e;
+        } finally {
+            Timer.builder(METRIC)
+                    .description("Time spent in @Lock repository methods")
+                    .tag("method", method.getName())
+                    .tag("mode", lock.value().name())
+                    .tag("timeout", timeout)
+                    .tag("dialect", dialect())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry.getObject())
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static boolean isEmpty(Object result) {
+        return result instanceof Optional<?> optional && optional.isEmpty()
+                || result instanceof Collection<?> collection && collection.isEmpty();
+    }
+
+    private String dialect() {
+        if (dialect == null) {
+            dialect = entityManagerFactory.getObject().unwrap(SessionFactoryImplementor.class)
+                    .getJdbcServices().getDialect().getClass().getSimpleName();
+        }
+        return dialect;
+    }
+}
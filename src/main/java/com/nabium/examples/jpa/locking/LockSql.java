@@ -0,0 +1,33 @@
+package com.nabium.examples.jpa.locking;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * SQL statements captured by {@link LockSqlCapture} while a {@code @Lock}
+ * method of {@link StateRepository} was called.
+ *
+ * @param method     name of the repository method
+ * @param mode       {@code LockModeType}
+ * @param timeout    value of {@code jakarta.persistence.lock.timeout}, or
+ *                   {@code none}
+ * @param dialect    Hibernate dialect, such as {@code PostgreSQLDialect}
+ * @param statements distinct statements in order of first capture
+ */
+public record LockSql(String method, String mode, String timeout, String dialect, List<Statement> statements) {
+
+    /**
+     * A statement and its time, from being prepared until the next statement
+     * is prepared or the method returns.
+     *
+     * @param sql        SQL as Hibernate prepared it
+     * @param count      number of executions
+     * @param meanMillis mean time of an execution
+     * @param maxMillis  longest time of an execution
+     * @param firstSeen  when the statement was first captured
+     * @param lastSeen   when the statement was last captured
+     */
+    public record Statement(String sql, long count, double meanMillis, double maxMillis,
+            Instant firstSeen, Instant lastSeen) {
+    }
+}
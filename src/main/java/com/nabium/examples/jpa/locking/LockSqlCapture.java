@@ -0,0 +1,223 @@
+package com.nabium.examples.jpa.locking;
+
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.stereotype.Component;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Captures the SQL which Hibernate prepares in each {@code @Lock} method of
+ * {@link StateRepository} on the active dialect, with the time of each
+ * statement, to be read from the {@code locksql} management endpoint.
+ *
+ * <p>
+ * Registered as the Hibernate {@link StatementInspector}, which sees every
+ * statement before it is prepared. Statements are attributed to the
+ * repository method running in the same thread. The time of a statement lasts
+ * until the next statement is prepared or the method returns, so on conflict
+ * it is dominated by the lock wait. Statements set by
+ * {@link LockTimeoutAspect} through JDBC are not captured.
+ * </p>
+ *
+ * <p>
+ * Up to {@code state.lock.sql.max-statements} distinct statements are kept
+ * per method, a new one is logged. Disabled with
+ * {@code state.lock.sql.capture=false}.
+ * </p>
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(LockSqlCapture.ORDER)
+@ConditionalOnProperty(name = "state.lock.sql.capture", havingValue = "true", matchIfMissing = true)
+public class LockSqlCapture implements StatementInspector, HibernatePropertiesCustomizer {
+
+    /** Inside of {@link LockTimeoutAspect}, to time the statements only */
+    static final int ORDER = LockTimeoutAspect.ORDER + 10;
+
+    private static final ThreadLocal<Capture> CURRENT = new ThreadLocal<>();
+
+    @Autowired
+    private ObjectProvider<EntityManagerFactory> entityManagerFactory;
+
+    @Value("${state.lock.sql.max-statements:16}")
+    private int maxStatements;
+
+    private final Map<String, MethodStats> methods = new ConcurrentHashMap<>();
+
+    private volatile String dialect;
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+    }
+
+    @Around("execution(* com.nabium.examples.jpa.locking.StateRepository.*(..))")
+    public Object capture(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Lock lock = AnnotationUtils.findAnnotation(method, Lock.class);
+        if (lock == null || CURRENT.get() != null) {
+            return joinPoint.proceed();
+        }
+
+        Capture capture = new Capture();
+        CURRENT.set(capture);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            CURRENT.remove();
+            capture.finish(System.nanoTime());
+            if (!capture.sql.isEmpty()) {
+                methods.computeIfAbsent(method.getName(),
+                        name -> new MethodStats(lock.value().name(), LockHints.lockTimeout(method)))
+                        .record(method.getName(), capture);
+            }
+        }
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Capture capture = CURRENT.get();
+        if (capture != null) {
+            capture.add(sql, System.nanoTime());
+        }
+        return sql;
+    }
+
+    /**
+     * @return captured statements by name of the repository method, in order
+     *         of name
+     */
+    public List<LockSql> lockSql() {
+        List<LockSql> result = new ArrayList<>();
+        methods.keySet().stream().sorted().forEach(name -> lockSql(name).ifPresent(result::add));
+        return result;
+    }
+
+    public Optional<LockSql> lockSql(String method) {
+        return Optional.ofNullable(methods.get(method)).map(stats -> stats.snapshot(method, dialect()));
+    }
+
+    private String dialect() {
+        if (dialect == null) {
+            dialect = entityManagerFactory.getObject().unwrap(SessionFactoryImplementor.class)
+                    .getJdbcServices().getDialect().getClass().getSimpleName();
+        }
+        return dialect;
+    }
+
+    /** Statements of one call, in the thread of the call */
+    private static final class Capture {
+
+        private final List<String> sql = new ArrayList<>();
+
+        private final List<Long> started = new ArrayList<>();
+
+        private final List<Long> nanos = new ArrayList<>();
+
+        void add(String statement, long now) {
+            finish(now);
+            sql.add(statement);
+            started.add(now);
+        }
+
+        /** Ends the time of the last statement */
+        void finish(long now) {
+            if (nanos.size() < started.size()) {
+                nanos.add(now - started.get(started.size() - 1));
+            }
+        }
+    }
+
+    private final class MethodStats {
+
+        private final String mode;
+
+        private final String timeout;
+
+        private final Map<String, StatementStats> statements = new ConcurrentHashMap<>();
+
+        MethodStats(String mode, String timeout) {
+            this.mode = mode;
+            this.timeout = timeout;
+        }
+
+        void record(String method, Capture capture) {
+            for (int i = 0; i < capture.sql.size(); i++) {
+                String sql = capture.sql.get(i);
+                StatementStats stats = statements.get(sql);
+                if (stats == null) {
+                    if (statements.size() >= maxStatements) {
+                        continue;
+                    }
+                    stats = statements.computeIfAbsent(sql, key -> {
+                        log.info("Captured SQL of {}: {}", method, key);
+                        return new StatementStats();
+                    });
+                }
+                stats.record(capture.nanos.get(i));
+            }
+        }
+
+        LockSql snapshot(String method, String dialect) {
+            List<LockSql.Statement> snapshot = statements.entrySet().stream()
+                    .map(entry -> entry.getValue().snapshot(entry.getKey()))
+                    .sorted((a, b) -> a.firstSeen().compareTo(b.firstSeen()))
+                    .toList();
+            return new LockSql(method, mode, timeout, dialect, snapshot);
+        }
+    }
+
+    private static final class StatementStats {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private final Instant firstSeen = Instant.now();
+
+        private volatile Instant lastSeen = firstSeen;
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            lastSeen = Instant.now();
+        }
+
+        LockSql.Statement snapshot(String sql) {
+            long n = count.sum();
+            double mean = n == 0 ? 0 : (double) totalNanos.sum() / n / TimeUnit.MILLISECONDS.toNanos(1);
+            double max = (double) maxNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+            return new LockSql.Statement(sql, n, mean, max, firstSeen, lastSeen);
+        }
+    }
+}
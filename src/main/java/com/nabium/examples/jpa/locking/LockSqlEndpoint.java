@@ -0,0 +1,38 @@
+package com.nabium.examples.jpa.locking;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code /actuator/locksql} lists the SQL captured by {@link LockSqlCapture}
+ * for each {@code @Lock} method called so far, and
+ * {@code /actuator/locksql/{method}} for one of them.
+ */
+@Component
+@Endpoint(id = "locksql")
+@ConditionalOnProperty(name = "state.lock.sql.capture", havingValue = "true", matchIfMissing = true)
+public class LockSqlEndpoint {
+
+    @Autowired
+    private LockSqlCapture capture;
+
+    @ReadOperation
+    public List<LockSql> lockSql() {
+        return capture.lockSql();
+    }
+
+    /**
+     * @return {@code null}, which is {@code 404 Not Found}, if the method has
+     *         not been called
+     */
+    @ReadOperation
+    public LockSql lockSql(@Selector String method) {
+        return capture.lockSql(method).orElse(null);
+    }
+}
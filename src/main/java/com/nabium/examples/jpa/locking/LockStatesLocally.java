@@ -0,0 +1,29 @@
+package com.nabium.examples.jpa.locking;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Takes in-process locks of states before the transaction of the annotated
+ * method begins, so that writers of the same states in this JVM wait in memory
+ * instead of each holding a connection while waiting for the row lock.
+ *
+ * <p>
+ * See {@link StripedStateLockAspect}.
+ * </p>
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface LockStatesLocally {
+
+    /**
+     * SpEL expression of the ids to lock, evaluated against the arguments by
+     * name, such as {@code #id}. Either a {@code String} or a collection of
+     * them.
+     */
+    String value();
+}
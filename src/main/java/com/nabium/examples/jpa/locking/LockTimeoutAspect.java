@@ -0,0 +1,154 @@
+package com.nabium.examples.jpa.locking;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Optional;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Enforces {@code jakarta.persistence.lock.timeout} of {@code @Lock} methods of
+ * {@link StateRepository} on every database.
+ *
+ * <p>
+ * Hibernate ignores the timeout on PostgreSQL, MySQL and H2 (see README). For
+ * the duration of the call, the timeout is set on the connection with
+ * {@code SET LOCAL lock_timeout} on PostgreSQL,
+ * {@code innodb_lock_wait_timeout} on MySQL and MariaDB, which is rounded up
+ * to seconds, and {@code SET LOCK_TIMEOUT} on H2. The previous value is
+ * restored afterwards, so that later statements of the transaction and pooled
+ * connections keep their own. On PostgreSQL, a failed call aborts the
+ * transaction, whose rollback resets the timeout instead. A connection whose
+ * timeout could not be restored is evicted from the pool once the
+ * transaction has completed.
+ * </p>
+ *
+ * <p>
+ * {@code NOWAIT} and {@code SKIP LOCKED} hints are left to Hibernate.
+ * Disabled with {@code state.lock.timeout.enforce=false}.
+ * </p>
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(LockTimeoutAspect.ORDER)
+@ConditionalOnProperty(name = "state.lock.timeout.enforce", havingValue = "true", matchIfMissing = true)
+public class LockTimeoutAspect {
+
+    /** Inside of {@link LockMetricsAspect}, to be included in the time */
+    static final int ORDER = LockMetricsAspect.ORDER + 10;
+
+    @Autowired
+    private ObjectProvider<EntityManagerFactory> entityManagerFactory;
+
+    @Autowired
+    private ObjectProvider<DataSource> dataSource;
+
+    private volatile Optional<LockTimeoutSql> lockTimeoutSql;
+
+    @Around("execution(* com.nabium.examples.jpa.locking.StateRepository.*(..))")
+    public Object enforceLockTimeout(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        long timeout = NumberUtils.toLong(LockHints.lockTimeout(method), -1);
+        if (timeout <= 0
+                || AnnotationUtils.findAnnotation(method, Lock.class) == null
+                || !TransactionSynchronizationManager.isActualTransactionActive()
+                || lockTimeoutSql().isEmpty()) {
+            return joinPoint.proceed();
+        }
+
+        LockTimeoutSql sql = lockTimeoutSql().get();
+        EntityManager em = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory.getObject());
+        Session session = em.unwrap(Session.class);
+
+        String previous = session.doReturningWork(con -> sql.apply(con, timeout));
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            if (!sql.isTransactionScoped()) {
+                restore(session, sql, previous);
+            }
+            throw e;
+        }
+        restore(session, sql, previous);
+        return result;
+    }
+
+    private void restore(Session session, LockTimeoutSql sql, String previous) {
+        try {
+            session.doWork(con -> sql.restore(con, previous));
+        } catch (RuntimeException e) {
+            // the connection is likely broken by the failed lock, and must not
+            // go back to the pool with the timeout of this call
+            log.warn("Failed to restore lock timeout to {}, evicting the connection after the transaction: {}",
+                    previous, e.toString());
+            try {
+                session.doWork(this::evictAfterCompletion);
+            } catch (RuntimeException evictFailure) {
+                log.warn("Failed to evict the connection: {}", evictFailure.toString());
+            }
+        }
+    }
+
+    /**
+     * Evicts the connection from the pool it was taken from, which is the pool
+     * of the current transaction if the data source routes. Closing it before
+     * the transaction has completed would fail its rollback.
+     */
+    private void evictAfterCompletion(Connection con) throws SQLException {
+        Connection target = con instanceof ConnectionProxy proxy ? proxy.getTargetConnection() : con;
+        DataSource dataSource = this.dataSource.getObject();
+        HikariDataSource pool = dataSource.isWrapperFor(HikariDataSource.class)
+                ? dataSource.unwrap(HikariDataSource.class)
+                : null;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (pool != null) {
+                    pool.evictConnection(target);
+                    return;
+                }
+                try {
+                    target.abort(Runnable::run);
+                } catch (SQLException e) {
+                    log.warn("Failed to abort the connection: {}", e.toString());
+                }
+            }
+        });
+    }
+
+    private Optional<LockTimeoutSql> lockTimeoutSql() {
+        if (lockTimeoutSql == null) {
+            lockTimeoutSql = Optional.ofNullable(LockTimeoutSql.of(entityManagerFactory.getObject()
+                    .unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect()));
+        }
+        return lockTimeoutSql;
+    }
+}
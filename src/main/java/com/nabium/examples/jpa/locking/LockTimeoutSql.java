@@ -0,0 +1,102 @@
+package com.nabium.examples.jpa.locking;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+
+/**
+ * Statements to read and change the lock timeout of a connection, for each
+ * database.
+ */
+enum LockTimeoutSql {
+
+    /** Milliseconds, reset at the end of the transaction */
+    POSTGRESQL("SHOW lock_timeout", "SET LOCAL lock_timeout = '%s'", true) {
+        @Override
+        String format(long millis) {
+            return millis + "ms";
+        }
+    },
+
+    /** Seconds, rounded up, for the session. MariaDB too. */
+    MYSQL("SELECT @@SESSION.innodb_lock_wait_timeout", "SET SESSION innodb_lock_wait_timeout = %s", false) {
+        @Override
+        String format(long millis) {
+            return String.valueOf((millis + 999) / 1000);
+        }
+    },
+
+    /** Milliseconds, for the session */
+    H2("SELECT LOCK_TIMEOUT()", "SET LOCK_TIMEOUT %s", false) {
+        @Override
+        String format(long millis) {
+            return String.valueOf(millis);
+        }
+    };
+
+    private final String query;
+
+    private final String update;
+
+    private final boolean transactionScoped;
+
+    LockTimeoutSql(String query, String update, boolean transactionScoped) {
+        this.query = query;
+        this.update = update;
+        this.transactionScoped = transactionScoped;
+    }
+
+    /**
+     * @return statements for the dialect, or {@code null} if not supported
+     */
+    static LockTimeoutSql of(Dialect dialect) {
+        if (dialect instanceof PostgreSQLDialect) {
+            return POSTGRESQL;
+        } else if (dialect instanceof MySQLDialect) {
+            return MYSQL;
+        } else if (dialect instanceof H2Dialect) {
+            return H2;
+        }
+        return null;
+    }
+
+    abstract String format(long millis);
+
+    /**
+     * @return {@code true} if the timeout is reset by the database at the end
+     *         of the transaction, so it need not be restored after a failure,
+     *         which aborts the transaction on PostgreSQL
+     */
+    boolean isTransactionScoped() {
+        return transactionScoped;
+    }
+
+    /**
+     * Sets lock timeout of the connection.
+     *
+     * @return previous value, to be passed to {@link #restore(Connection, String)}
+     */
+    String apply(Connection con, long millis) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            String previous;
+            try (ResultSet rs = stmt.executeQuery(query)) {
+                rs.next();
+                previous = rs.getString(1);
+            }
+            stmt.execute(update.formatted(format(millis)));
+            return previous;
+        }
+    }
+
+    void restore(Connection con, String previous) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute(update.formatted(previous));
+        }
+    }
+}
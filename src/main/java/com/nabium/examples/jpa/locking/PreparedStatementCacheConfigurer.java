@@ -0,0 +1,66 @@
+package com.nabium.examples.jpa.locking;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Enables the prepared statement cache and batch rewriting of the JDBC driver
+ * of each {@link HikariDataSource}, in the {@code performance} profile.
+ *
+ * <p>
+ * The properties depend on the driver, and H2 rejects the ones it does not
+ * know, so they are chosen by the prefix of the JDBC URL:
+ * </p>
+ *
+ * <ul>
+ * <li>PostgreSQL: server-side prepared statements from the first execution,
+ * and multi-row inserts for batches</li>
+ * <li>MySQL: client-side cache of server-side prepared statements, and
+ * multi-row statements for batches</li>
+ * <li>MariaDB: client-side cache of server-side prepared statements, batches
+ * use the bulk protocol by default</li>
+ * <li>H2: nothing, it runs in the JVM</li>
+ * </ul>
+ *
+ * <p>
+ * Properties already set with
+ * {@code spring.datasource.hikari.data-source-properties.*} are kept.
+ * </p>
+ */
+@Component
+@Profile("performance")
+public class PreparedStatementCacheConfigurer implements BeanPostProcessor {
+
+    private static final Map<String, Map<String, String>> PROPERTIES = Map.of(
+            "jdbc:postgresql:", Map.of(
+                    "prepareThreshold", "1",
+                    "preparedStatementCacheQueries", "256",
+                    "reWriteBatchedInserts", "true"),
+            "jdbc:mysql:", Map.of(
+                    "useServerPrepStmts", "true",
+                    "cachePrepStmts", "true",
+                    "prepStmtCacheSize", "256",
+                    "prepStmtCacheSqlLimit", "2048",
+                    "rewriteBatchedStatements", "true"),
+            "jdbc:mariadb:", Map.of(
+                    "useServerPrepStmts", "true",
+                    "cachePrepStmts", "true",
+                    "prepStmtCacheSize", "256"));
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof HikariDataSource dataSource && dataSource.getJdbcUrl() != null) {
+            PROPERTIES.forEach((prefix, properties) -> {
+                if (dataSource.getJdbcUrl().startsWith(prefix)) {
+                    properties.forEach(dataSource.getDataSourceProperties()::putIfAbsent);
+                }
+            });
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,43 @@
+package com.nabium.examples.jpa.locking;
+
+import java.lang.reflect.Method;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Rejects {@code @Lock} repository methods called in a read-only transaction
+ * while reads are routed to a replica, see {@link DataSourceConfig}. Such a
+ * transaction is connected to the replica, where locks do not exclude writers
+ * of the primary.
+ */
+@Aspect
+@Component
+@Order(ReplicaLockGuardAspect.ORDER)
+@ConditionalOnProperty(name = "state.datasource.replica.url")
+public class ReplicaLockGuardAspect {
+
+    /** Outside of the other advices on repositories, to fail before them */
+    static final int ORDER = LockMetricsAspect.ORDER - 10;
+
+    @Around("execution(* com.nabium.examples.jpa.locking.StateRepository.*(..))"
+            + " || execution(* com.nabium.examples.jpa.locking.StateLockRepository.*(..))")
+    public Object checkPrimary(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && AnnotationUtils.findAnnotation(method, Lock.class) != null) {
+            throw new InvalidDataAccessApiUsageException(
+                    method.getName() + " locks rows and cannot run in a read-only transaction on the replica");
+        }
+        return joinPoint.proceed();
+    }
+}
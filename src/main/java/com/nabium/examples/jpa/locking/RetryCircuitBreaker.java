@@ -0,0 +1,82 @@
+package com.nabium.examples.jpa.locking;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Decides whether a failed call may be retried, to shed the load of retries
+ * when they pile up.
+ *
+ * <ul>
+ * <li>At most {@code maxConcurrent} calls retry at the same time, others fail
+ * with their first error.</li>
+ * <li>After {@code failureThreshold} calls in a row used up their attempts,
+ * the breaker opens and nothing is retried for {@code openDuration}.</li>
+ * </ul>
+ */
+class RetryCircuitBreaker {
+
+    private final int maxConcurrent;
+
+    private final int failureThreshold;
+
+    private final Duration openDuration;
+
+    private final AtomicInteger retrying = new AtomicInteger();
+
+    private final AtomicInteger exhaustedInRow = new AtomicInteger();
+
+    private final AtomicReference<Instant> openUntil = new AtomicReference<>(Instant.MIN);
+
+    RetryCircuitBreaker(int maxConcurrent, int failureThreshold, Duration openDuration) {
+        this.maxConcurrent = maxConcurrent;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+    }
+
+    boolean isOpen() {
+        return Instant.now().isBefore(openUntil.get());
+    }
+
+    /**
+     * Acquires a permit to retry a call, to be released with
+     * {@link #release()} when the call is done.
+     *
+     * @return {@code false} if the breaker is open or too many calls are
+     *         retrying
+     */
+    boolean tryAcquire() {
+        if (isOpen()) {
+            return false;
+        }
+        if (retrying.incrementAndGet() > maxConcurrent) {
+            retrying.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    void release() {
+        retrying.decrementAndGet();
+    }
+
+    void onSuccess() {
+        exhaustedInRow.set(0);
+    }
+
+    /**
+     * Records a call which used up its attempts.
+     *
+     * @return {@code true} if the breaker has just opened
+     */
+    boolean onExhausted() {
+        if (exhaustedInRow.incrementAndGet() < failureThreshold) {
+            return false;
+        }
+        exhaustedInRow.set(0);
+        openUntil.set(Instant.now().plus(openDuration));
+        return true;
+    }
+}
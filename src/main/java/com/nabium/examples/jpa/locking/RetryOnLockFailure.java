@@ -0,0 +1,25 @@
+package com.nabium.examples.jpa.locking;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Replays the transaction of the annotated method when it fails to acquire a
+ * lock, such as lock timeouts and deadlock victims.
+ *
+ * <p>
+ * The method must be idempotent, it may run more than once. Only the
+ * outermost transaction is replayed, see {@link LockFailureRetryAspect}.
+ * </p>
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnLockFailure {
+
+    /** Attempts including the first one */
+    int maxAttempts() default 3;
+}
@@ -6,6 +6,7 @@ import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -42,4 +43,9 @@ public class State {
     @Enumerated(EnumType.STRING)
     @Column(name = "census_region", length = 9, nullable = false)
     private CensusRegion censusRegion;
+
+    /** Version for optimistic locking, incremented on every update */
+    @Version
+    @Column(nullable = false)
+    private Long version;
 }
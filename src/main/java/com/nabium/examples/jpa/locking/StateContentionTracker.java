@@ -0,0 +1,131 @@
+package com.nabium.examples.jpa.locking;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Tracks recent contention on each state, to choose how
+ * {@link StateService#updateStateAdaptive(String, State)} locks it.
+ *
+ * <p>
+ * Each state has a score which halves every {@code state.adaptive.half-life}.
+ * A conflict, either an optimistic one or a failed {@code NOWAIT}, adds one,
+ * and a blocking lock wait adds one per {@code state.adaptive.slow-wait}
+ * waited, if it waited that long at least. Scores of up to
+ * {@code state.adaptive.max-ids} states are kept, others start over at zero.
+ * </p>
+ *
+ * <p>
+ * Choices are counted by the {@code state.adaptive} counter, tagged by
+ * {@code strategy}.
+ * </p>
+ */
+@Component
+public class StateContentionTracker {
+
+    public static final String METRIC = "state.adaptive";
+
+    /** How to lock a state, from the cheapest without contention */
+    public enum Strategy {
+
+        /** Check the version on commit, see {@link UpdateMode#OPTIMISTIC} */
+        OPTIMISTIC,
+
+        /** {@code SELECT ... FOR UPDATE NOWAIT}, retried after a backoff */
+        NO_WAIT,
+
+        /** {@code SELECT ... FOR UPDATE}, waiting for the lock */
+        BLOCKING
+    }
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    private final long halfLifeNanos;
+
+    private final double noWaitThreshold;
+
+    private final double blockingThreshold;
+
+    private final Duration slowWait;
+
+    private final Cache<String, Score> scores;
+
+    public StateContentionTracker(ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${state.adaptive.half-life:10s}") Duration halfLife,
+            @Value("${state.adaptive.no-wait-threshold:1}") double noWaitThreshold,
+            @Value("${state.adaptive.blocking-threshold:5}") double blockingThreshold,
+            @Value("${state.adaptive.slow-wait:50ms}") Duration slowWait,
+            @Value("${state.adaptive.max-ids:10000}") long maxIds) {
+        this.meterRegistry = meterRegistry;
+        this.halfLifeNanos = halfLife.toNanos();
+        this.noWaitThreshold = noWaitThreshold;
+        this.blockingThreshold = blockingThreshold;
+        this.slowWait = slowWait;
+        // after 20 half-lives, a score is less than a millionth of what it was
+        scores = Caffeine.newBuilder()
+                .maximumSize(maxIds)
+                .expireAfterAccess(halfLife.multipliedBy(20))
+                .build();
+    }
+
+    /**
+     * Chooses the strategy for the state by its current score, and counts
+     * the choice.
+     */
+    public Strategy strategyOf(String id) {
+        double score = scoreOf(id);
+        Strategy strategy = score >= blockingThreshold ? Strategy.BLOCKING
+                : score >= noWaitThreshold ? Strategy.NO_WAIT
+                : Strategy.OPTIMISTIC;
+        meterRegistry.ifAvailable(registry -> registry.counter(METRIC, "strategy", strategy.name().toLowerCase())
+                .increment());
+        return strategy;
+    }
+
+    public double scoreOf(String id) {
+        Score score = scores.getIfPresent(id);
+        return score != null ? score.get(System.nanoTime()) : 0;
+    }
+
+    void recordConflict(String id) {
+        scores.get(id, key -> new Score()).add(System.nanoTime(), 1);
+    }
+
+    void recordWait(String id, Duration waited) {
+        if (waited.compareTo(slowWait) >= 0) {
+            scores.get(id, key -> new Score()).add(System.nanoTime(), (double) waited.toNanos() / slowWait.toNanos());
+        }
+    }
+
+    private final class Score {
+
+        private double value;
+
+        private long updatedAt = System.nanoTime();
+
+        synchronized double get(long now) {
+            decay(now);
+            return value;
+        }
+
+        synchronized void add(long now, double weight) {
+            decay(now);
+            value += weight;
+        }
+
+        private void decay(long now) {
+            if (now > updatedAt) {
+                value *= Math.pow(0.5, (double) (now - updatedAt) / halfLifeNanos);
+                updatedAt = now;
+            }
+        }
+    }
+}
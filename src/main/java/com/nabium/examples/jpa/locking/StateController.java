@@ -4,15 +4,29 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.EnumUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 
 @RestController
@@ -22,28 +36,145 @@ public class StateController {
     @Autowired
     private StateService service;
 
+    @Autowired
+    private StateDeletionQueue deletionQueue;
+
+    @Autowired
+    private StateWriteBuffer writeBuffer;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${state.update.mode:pessimistic}")
+    private UpdateMode defaultUpdateMode;
+
     @GetMapping
-    public List<State> listStates() {
+    public List<StateView> listStates() {
         return service.listStates();
     }
 
+    /**
+     * Lists a page of states after {@code after}. Unless the page is empty,
+     * the {@code Link} header points to the next one.
+     */
+    @GetMapping(params = "limit")
+    public ResponseEntity<List<StateView>> listStates(@RequestParam(defaultValue = "") String after,
+            @RequestParam int limit) {
+        List<StateView> states = service.listStates(after, limit);
+        if (states.isEmpty()) {
+            return ResponseEntity.ok(states);
+        }
+
+        String next = UriComponentsBuilder.fromPath("/state")
+                .queryParam("after", states.get(states.size() - 1).getId())
+                .queryParam("limit", limit)
+                .toUriString();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                .body(states);
+    }
+
+    /**
+     * Paging and streaming do not combine, {@code 400 Bad Request}.
+     */
+    @GetMapping(params = { "stream", "limit" })
+    public ResponseEntity<Void> listStatesStreamAndLimit() {
+        return ResponseEntity.badRequest().build();
+    }
+
+    /**
+     * Writes all the states as a JSON array while they are read from the
+     * database.
+     */
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamStates() {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+                generator.writeStartArray();
+                service.forEachState(state -> {
+                    try {
+                        generator.writeObject(state);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
     @GetMapping("/{id}")
-    public State getState(@PathVariable String id) {
+    public StateView getState(@PathVariable String id) {
         return service.getState(id);
     }
 
+    /**
+     * Updates a state in the mode of {@code mode}. In the
+     * {@code write_behind} mode, the update is buffered by
+     * {@link StateWriteBuffer} and the response is {@code 202 Accepted}, or
+     * {@code 503 Service Unavailable} if the buffer is shut down.
+     */
     @PutMapping("/{id}")
-    public State updateState(@PathVariable String id, @RequestBody State state) {
-        return service.updateState(id, state);
+    public ResponseEntity<State> updateState(@PathVariable String id, @RequestBody State state,
+            @RequestParam(defaultValue = "") String mode) {
+        switch (EnumUtils.getEnumIgnoreCase(UpdateMode.class, mode, defaultUpdateMode)) {
+            case OPTIMISTIC:
+                return ResponseEntity.ok(service.updateStateOptimistic(id, state));
+            case ADAPTIVE:
+                return ResponseEntity.ok(service.updateStateAdaptive(id, state));
+            case WRITE_BEHIND:
+                try {
+                    writeBuffer.buffer(id, state);
+                } catch (RejectedExecutionException e) {
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+                }
+                return ResponseEntity.accepted().body(state);
+            default:
+                return ResponseEntity.ok(service.updateState(id, state));
+        }
     }
 
+    @PutMapping
+    public List<State> updateStates(@RequestBody List<State> states) {
+        return service.updateStates(states);
+    }
+
+    /**
+     * Deletes a state, waiting for its lock, failing at once if it is locked
+     * with {@code noWait=true}, or in the background with {@code async=true}.
+     * In the background mode, the response is {@code 202 Accepted} and its
+     * {@code Location} header points to the status of the deletion, or
+     * {@code 503 Service Unavailable} if too many deletions are queued.
+     */
     @DeleteMapping("/{id}")
-    public void deleteState(@PathVariable String id, @RequestParam(defaultValue = "") String noWait) {
+    public ResponseEntity<StateDeletion> deleteState(@PathVariable String id,
+            @RequestParam(defaultValue = "") String noWait, @RequestParam(defaultValue = "") String async) {
+        if (BooleanUtils.toBoolean(async)) {
+            StateDeletion deletion;
+            try {
+                deletion = deletionQueue.submit(id);
+            } catch (RejectedExecutionException e) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            }
+            return ResponseEntity.accepted()
+                    .location(UriComponentsBuilder.fromPath("/state/deletions/{id}").build(deletion.id()))
+                    .body(deletion);
+        }
+
         if (BooleanUtils.toBoolean(noWait)) {
             service.deleteStateNoWait(id);
         } else {
             service.deleteState(id);
         }
+        return ResponseEntity.ok().build();
+    }
+
+    @GetMapping("/deletions/{id}")
+    public ResponseEntity<StateDeletion> getDeletion(@PathVariable String id) {
+        return ResponseEntity.of(deletionQueue.get(id));
     }
 
     @DeleteMapping
@@ -0,0 +1,30 @@
+package com.nabium.examples.jpa.locking;
+
+/**
+ * Deletion of a state queued by {@link StateDeletionQueue}.
+ *
+ * @param id    id of the deletion, not of the state
+ * @param error cause of the failure, if {@code FAILED}
+ */
+public record StateDeletion(String id, String stateId, Status status, ErrorCode error) {
+
+    public enum Status {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    /**
+     * Stable cause of a failed deletion, the exception is only logged.
+     */
+    public enum ErrorCode {
+        /** The state does not exist */
+        NOT_FOUND,
+        /** The lock of the state was not acquired, even after retries */
+        LOCK_FAILURE,
+        /** Any other failure */
+        INTERNAL_ERROR
+    }
+
+    StateDeletion with(Status status, ErrorCode error) {
+        return new StateDeletion(id, stateId, status, error);
+    }
+}
@@ -0,0 +1,108 @@
+package com.nabium.examples.jpa.locking;
+
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Deletes states in the background, so that the caller does not wait for the
+ * row lock.
+ *
+ * <p>
+ * At most {@code state.delete.async.workers} deletions wait for locks at the
+ * same time, up to {@code state.delete.async.queue-capacity} more are queued
+ * and others are rejected. The status of a deletion is kept for
+ * {@code state.delete.async.retention} after its last change, so a finished
+ * deletion is kept that long after it finished.
+ * </p>
+ *
+ * <p>
+ * The status is kept in memory of the node which queued the deletion and is
+ * lost when it stops. Polling another node behind a load balancer answers
+ * {@code 404 Not Found}, unless the requests of a client stick to one node.
+ * </p>
+ */
+@Slf4j
+@Service
+public class StateDeletionQueue {
+
+    @Autowired
+    private StateService service;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Cache<String, StateDeletion> deletions;
+
+    public StateDeletionQueue(@Value("${state.delete.async.workers:4}") int workers,
+            @Value("${state.delete.async.queue-capacity:100}") int queueCapacity,
+            @Value("${state.delete.async.retention:10m}") Duration retention) {
+        executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity));
+        deletions = Caffeine.newBuilder().expireAfterWrite(retention).build();
+    }
+
+    /**
+     * Queues the deletion of the state.
+     *
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public StateDeletion submit(String stateId) {
+        StateDeletion deletion = new StateDeletion(UUID.randomUUID().toString(), stateId,
+                StateDeletion.Status.QUEUED, null);
+        deletions.put(deletion.id(), deletion);
+        try {
+            executor.execute(() -> delete(deletion));
+        } catch (RejectedExecutionException e) {
+            deletions.invalidate(deletion.id());
+            throw e;
+        }
+        return deletion;
+    }
+
+    public Optional<StateDeletion> get(String id) {
+        return Optional.ofNullable(deletions.getIfPresent(id));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    private void delete(StateDeletion deletion) {
+        deletions.put(deletion.id(), deletion.with(StateDeletion.Status.RUNNING, null));
+        try {
+            service.deleteState(deletion.stateId());
+            deletions.put(deletion.id(), deletion.with(StateDeletion.Status.DONE, null));
+        } catch (NoSuchElementException e) {
+            log.debug("Failed to delete {}, not found", deletion.stateId());
+            fail(deletion, StateDeletion.ErrorCode.NOT_FOUND);
+        } catch (PessimisticLockingFailureException e) {
+            log.warn("Failed to delete {}: {}", deletion.stateId(), e.toString());
+            fail(deletion, StateDeletion.ErrorCode.LOCK_FAILURE);
+        } catch (RuntimeException e) {
+            log.error("Failed to delete {}", deletion.stateId(), e);
+            fail(deletion, StateDeletion.ErrorCode.INTERNAL_ERROR);
+        }
+    }
+
+    private void fail(StateDeletion deletion, StateDeletion.ErrorCode error) {
+        deletions.put(deletion.id(), deletion.with(StateDeletion.Status.FAILED, error));
+    }
+}
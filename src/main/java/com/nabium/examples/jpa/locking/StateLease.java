@@ -0,0 +1,12 @@
+package com.nabium.examples.jpa.locking;
+
+import java.time.Instant;
+
+/**
+ * Lease of a state held by {@code owner} until {@code expiresAt}.
+ *
+ * @param token fencing token, greater than the token of any earlier lease of
+ *              the state
+ */
+public record StateLease(String stateId, String owner, long token, Instant expiresAt) {
+}
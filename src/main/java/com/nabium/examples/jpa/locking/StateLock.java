@@ -0,0 +1,76 @@
+package com.nabium.examples.jpa.locking;
+
+import java.time.Instant;
+
+import org.springframework.data.domain.Persistable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Lease of a {@link State}, see {@link StateLockService}.
+ *
+ * <p>
+ * The row is kept when the lease is released or expires, so that the fencing
+ * token keeps increasing.
+ * </p>
+ *
+ * <p>
+ * A new lease is inserted with {@code persist} instead of being merged by
+ * its assigned id, so that a concurrent first lease of the same state fails
+ * on the primary key.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "state_lock")
+public class StateLock implements Persistable<String> {
+
+    /** Id of the leased state */
+    @Id
+    @Column(length = 2, nullable = false)
+    private String id;
+
+    /** Holder of the lease, given by the caller */
+    @Column(length = 64, nullable = false)
+    private String owner;
+
+    /** End of the lease, the lease is free after it */
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    /** Fencing token, incremented on every acquisition */
+    @Column(nullable = false)
+    private Long token;
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean persisted;
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+}
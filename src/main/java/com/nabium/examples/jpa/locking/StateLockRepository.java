@@ -0,0 +1,14 @@
+package com.nabium.examples.jpa.locking;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+
+import jakarta.persistence.LockModeType;
+
+public interface StateLockRepository extends JpaRepository<StateLock, String> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<StateLock> findForUpdateById(String id);
+}
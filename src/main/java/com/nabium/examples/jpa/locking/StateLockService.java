@@ -0,0 +1,188 @@
+package com.nabium.examples.jpa.locking;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Leases of states in the {@code state_lock} table.
+ *
+ * <p>
+ * A lease lets a long-running operation own a state without holding a row lock
+ * and a connection for the whole operation. Each call takes a short
+ * transaction of its own, which locks only the row of the lease. A lease
+ * expires unless it is renewed, so a crashed owner does not block others for
+ * longer than its time to live.
+ * </p>
+ *
+ * <p>
+ * Every acquisition increments the fencing token of the state. Writes made
+ * under a lease check the token in their own transaction, see
+ * {@link #checkHeld(StateLease)}, so that an owner whose lease has expired and
+ * has been taken over cannot overwrite the new owner. Expiry is decided by the
+ * clocks of the application servers, which must agree within a fraction of
+ * the time to live.
+ * </p>
+ */
+@Service
+public class StateLockService {
+
+    @Autowired
+    private StateLockRepository repo;
+
+    @Autowired
+    private StateRepository stateRepo;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    /**
+     * Acquires the lease of the state, if it is free, expired or already held
+     * by {@code owner}.
+     *
+     * @return empty if another owner holds the lease
+     * @throws NoSuchElementException if the state does not exist
+     */
+    public Optional<StateLease> acquire(String stateId, String owner, Duration ttl) {
+        Objects.requireNonNull(stateId);
+        Objects.requireNonNull(owner);
+        Objects.requireNonNull(ttl);
+
+        try {
+            return newTxTemplate().execute(tx -> {
+                Instant now = Instant.now();
+                StateLock lock = repo.findForUpdateById(stateId).orElse(null);
+                if (lock == null) {
+                    if (!stateRepo.existsById(stateId)) {
+                        throw new NoSuchElementException();
+                    }
+                    lock = new StateLock();
+                    lock.setId(stateId);
+                    lock.setOwner(owner);
+                    lock.setExpiresAt(now.plus(ttl));
+                    lock.setToken(1L);
+                    // persisted and inserted now, so that a concurrent first lease fails here
+                    return Optional.of(toLease(repo.saveAndFlush(lock)));
+                } else if (lock.getExpiresAt().isAfter(now) && !lock.getOwner().equals(owner)) {
+                    return Optional.empty();
+                }
+
+                lock.setOwner(owner);
+                lock.setExpiresAt(now.plus(ttl));
+                lock.setToken(lock.getToken() + 1);
+                return Optional.of(toLease(lock));
+            });
+        } catch (DataIntegrityViolationException e) {
+            if (!isDuplicateKey(e)) {
+                throw e;
+            }
+            // another owner inserted the first lease of the state
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Extends the lease to {@code ttl} from now.
+     *
+     * @return empty if the lease has expired or been taken over
+     */
+    public Optional<StateLease> renew(StateLease lease, Duration ttl) {
+        Objects.requireNonNull(lease);
+        Objects.requireNonNull(ttl);
+
+        return newTxTemplate().execute(tx -> {
+            Instant now = Instant.now();
+            return repo.findForUpdateById(lease.stateId())
+                    .filter(lock -> isHeld(lock, lease, now))
+                    .map(lock -> {
+                        lock.setExpiresAt(now.plus(ttl));
+                        return toLease(lock);
+                    });
+        });
+    }
+
+    /**
+     * Releases the lease, so that others can acquire it before it expires.
+     *
+     * @return {@code false} if the lease has expired or been taken over
+     */
+    public boolean release(StateLease lease) {
+        Objects.requireNonNull(lease);
+
+        return newTxTemplate().execute(tx -> {
+            Instant now = Instant.now();
+            return repo.findForUpdateById(lease.stateId())
+                    .filter(lock -> isHeld(lock, lease, now))
+                    .map(lock -> {
+                        lock.setExpiresAt(now);
+                        return true;
+                    })
+                    .orElse(false);
+        });
+    }
+
+    /**
+     * Checks in the current transaction that the lease is still held. The
+     * row of the lease stays locked until the transaction ends, so the lease
+     * cannot be taken over before the writes of the transaction commit.
+     *
+     * @throws ConcurrencyFailureException if the lease has expired or been
+     *                                     taken over
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void checkHeld(StateLease lease) {
+        Objects.requireNonNull(lease);
+
+        Instant now = Instant.now();
+        if (repo.findForUpdateById(lease.stateId()).filter(lock -> isHeld(lock, lease, now)).isEmpty()) {
+            throw new ConcurrencyFailureException("Lease of " + lease.stateId() + " with token "
+                    + lease.token() + " is no longer held");
+        }
+    }
+
+    private TransactionTemplate newTxTemplate() {
+        TransactionTemplate txTemplate = new TransactionTemplate(txManager);
+        txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return txTemplate;
+    }
+
+    /**
+     * Whether the violation is of the primary key, by the SQLState of H2 and
+     * PostgreSQL or the error code of MySQL and MariaDB.
+     */
+    private static boolean isDuplicateKey(DataIntegrityViolationException e) {
+        if (e instanceof DuplicateKeyException) {
+            return true;
+        }
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException) {
+                return "23505".equals(sqlException.getSQLState()) || sqlException.getErrorCode() == 1062;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isHeld(StateLock lock, StateLease lease, Instant now) {
+        return lock.getToken() == lease.token()
+                && lock.getOwner().equals(lease.owner())
+                && lock.getExpiresAt().isAfter(now);
+    }
+
+    private static StateLease toLease(StateLock lock) {
+        return new StateLease(lock.getId(), lock.getOwner(), lock.getToken(), lock.getExpiresAt());
+    }
+}
@@ -1,10 +1,16 @@
 package com.nabium.examples.jpa.locking;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.jpa.repository.QueryHints;
 
 import jakarta.persistence.LockModeType;
@@ -18,6 +24,13 @@ public interface StateRepository extends JpaRepository<State, String> {
     @Lock(LockModeType.PESSIMISTIC_READ)
     Optional<State> findForShareById(String id);
 
+    /**
+     * Locks all the states in one statement, in order of id to avoid deadlocks
+     * between transactions locking overlapping sets.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<State> findForUpdateByIdInOrderByIdAsc(Collection<String> ids);
+
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "0"))
     Optional<State> findForUpdateNoWaitById(String id);
@@ -51,4 +64,55 @@ public interface StateRepository extends JpaRepository<State, String> {
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
     List<State> findForUpdateSkipLockedByCensusRegion(CensusRegion censusRegion);
+
+    /**
+     * Claims at most {@code limit} states in the region which are not locked by
+     * other transactions.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    List<State> findForUpdateSkipLockedByCensusRegionOrderByIdAsc(CensusRegion censusRegion, Limit limit);
+
+    /**
+     * Selects {@link StateView} with a constructor expression. A JPQL string is
+     * parsed once and cached by Hibernate, unlike derived queries which build a
+     * criteria query on every call.
+     */
+    String SELECT_VIEW = "SELECT new com.nabium.examples.jpa.locking.StateView("
+            + "s.id, s.name, s.code, s.abbr, s.censusRegion, s.version) FROM State s";
+
+    @Query(SELECT_VIEW + " ORDER BY s.id")
+    List<StateView> findViewsByOrderByIdAsc();
+
+    /**
+     * Page of states after {@code id}, in order of id. Pass the last id of a
+     * page to get the next one.
+     */
+    @Query(SELECT_VIEW + " WHERE s.id > :id ORDER BY s.id")
+    List<StateView> findViewsByIdGreaterThanOrderByIdAsc(String id, Limit limit);
+
+    /**
+     * Streams all the states in order of id, fetching {@code 500} rows per
+     * round trip. Must be closed, in a transaction. The fetch size is ignored
+     * by MySQL Connector/J without {@code useCursorFetch=true}.
+     */
+    @Query(SELECT_VIEW + " ORDER BY s.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<StateView> streamViewsByOrderByIdAsc();
+
+    /**
+     * Ids of the states after {@code id}, in order of id.
+     */
+    @Query("SELECT s.id FROM State s WHERE s.id > :id ORDER BY s.id")
+    List<String> findIdsByIdGreaterThanOrderByIdAsc(String id, Limit limit);
+
+    /**
+     * Deletes all the states with a single statement, without loading them
+     * into the persistence context.
+     *
+     * @return number of deleted states
+     */
+    @Modifying
+    @Query("DELETE FROM State s")
+    int deleteAllInBulk();
 }
@@ -1,11 +1,41 @@
 package com.nabium.examples.jpa.locking;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
+import org.hibernate.Session;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManagerFactory;
 
 @Service
 public class StateService {
@@ -13,44 +43,423 @@ public class StateService {
     @Autowired
     private StateRepository repo;
 
-    public List<State> listStates() {
-        return repo.findAll();
+    @Autowired
+    private StateLockService lockService;
+
+    @Autowired
+    private StateContentionTracker contention;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Value("${state.optimistic.max-attempts:5}")
+    private int optimisticMaxAttempts;
+
+    @Value("${state.optimistic.backoff:10ms}")
+    private Duration optimisticBackoff;
+
+    @Value("${state.optimistic.max-backoff:200ms}")
+    private Duration optimisticMaxBackoff;
+
+    @Value("${state.adaptive.no-wait-attempts:3}")
+    private int noWaitAttempts;
+
+    @Value("${state.list.max-limit:1000}")
+    private int listMaxLimit;
+
+    @Value("${state.delete.chunk-size:0}")
+    private int deleteChunkSize;
+
+    /**
+     * Lists all the states in order of id. Not cached, the whole table would
+     * be a single entry of the cache, see {@link #listStates(String, int)} for
+     * large tables.
+     */
+    @Transactional(readOnly = true)
+    public List<StateView> listStates() {
+        return repo.findViewsByOrderByIdAsc();
     }
 
-    public State getState(String id) {
-        return repo.findById(id).orElseThrow();
+    /**
+     * Lists a page of states after {@code after}, in order of id.
+     *
+     * <p>
+     * Keyset pagination: the cost of a page does not grow with its position,
+     * unlike {@code OFFSET}. {@code limit} is capped by
+     * {@code state.list.max-limit}.
+     * </p>
+     */
+    @Transactional(readOnly = true)
+    public List<StateView> listStates(String after, int limit) {
+        return repo.findViewsByIdGreaterThanOrderByIdAsc(after, Limit.of(Math.max(1, Math.min(limit, listMaxLimit))));
+    }
+
+    /**
+     * Passes all the states to {@code action} in order of id, without loading
+     * them at once.
+     *
+     * <p>
+     * MySQL Connector/J reads the whole result set into memory unless
+     * {@code useCursorFetch=true} is set on the connection, see README.
+     * PostgreSQL and MariaDB fetch rows as they are consumed.
+     * </p>
+     */
+    @Transactional(readOnly = true)
+    public void forEachState(Consumer<StateView> action) {
+        try (Stream<StateView> states = repo.streamViewsByOrderByIdAsc()) {
+            states.forEach(action);
+        }
     }
 
+    /**
+     * Gets a state by id. The read-only transaction keeps Hibernate from
+     * snapshotting the entity, which is cheaper than the query of a projection
+     * for a single row.
+     *
+     * <p>
+     * A miss is read from the primary, in the {@code primary-read} pool if a
+     * replica is configured, see {@link DataSourceConfig}. A replica lagging
+     * behind the update which evicted the state would otherwise have its
+     * stale row cached until it expires.
+     * </p>
+     *
+     * <p>
+     * Concurrent misses of the same id are coalesced, one of the callers loads
+     * the state while the others wait for it.
+     * </p>
+     */
+    @Cacheable(cacheNames = CacheConfig.STATES, sync = true)
+    @Transactional(readOnly = true)
+    public StateView getState(String id) {
+        return DataSourceConfig.readFromPrimary(() -> repo.findById(id)).map(StateView::of).orElseThrow();
+    }
+
+    @CacheEvict(cacheNames = CacheConfig.STATES, key = "#id")
+    @RetryOnLockFailure
+    @LockStatesLocally("#id")
     @Transactional
     public State updateState(String id, State state) {
-        Objects.requireNonNull(id);
-        Objects.requireNonNull(state);
-        if (!Objects.equals(id, state.getId())) {
-            throw new IllegalArgumentException();
-        }
+        checkState(id, state);
 
         State entity = repo.findForUpdateById(id).orElseThrow();
+        copyState(state, entity);
 
-        entity.setName(state.getName());
-        entity.setCode(state.getCode());
-        entity.setAbbr(state.getAbbr());
+        return entity;
+    }
+
+    /**
+     * Updates under a lease of {@link StateLockService} instead of a row lock.
+     *
+     * <p>
+     * The lease is checked and the state is written in one short transaction,
+     * so a long-running operation holds neither the row lock nor a connection
+     * between acquiring the lease and writing its result.
+     * </p>
+     *
+     * @throws ConcurrencyFailureException if the lease has expired or been
+     *                                     taken over
+     */
+    @CacheEvict(cacheNames = CacheConfig.STATES, key = "#id")
+    @Transactional
+    public State updateStateWithLease(String id, State state, StateLease lease) {
+        checkState(id, state);
+        if (!Objects.equals(id, lease.stateId())) {
+            throw new IllegalArgumentException();
+        }
+        lockService.checkHeld(lease);
+
+        State entity = repo.findById(id).orElseThrow();
+        copyState(state, entity);
 
         return entity;
     }
 
+    /**
+     * Updates without locking the row.
+     *
+     * <p>
+     * Each attempt runs in its own transaction and the version of the row is
+     * checked on commit. On conflict, the update is retried on the fresh row
+     * after a jittered backoff, up to {@code state.optimistic.max-attempts}
+     * times.
+     * </p>
+     *
+     * @throws OptimisticLockingFailureException if all attempts conflicted
+     */
+    @CacheEvict(cacheNames = CacheConfig.STATES, key = "#id")
+    public State updateStateOptimistic(String id, State state) {
+        checkState(id, state);
+
+        TransactionTemplate txTemplate = new TransactionTemplate(txManager);
+        JitteredBackoff backoff = new JitteredBackoff(optimisticBackoff, optimisticMaxBackoff);
+        for (int attempt = 1;; attempt++) {
+            try {
+                return txTemplate.execute(tx -> {
+                    State entity = repo.findById(id).orElseThrow();
+                    copyState(state, entity);
+                    return entity;
+                });
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= optimisticMaxAttempts || !backoff.sleep(attempt)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates with the strategy {@link StateContentionTracker} chooses for
+     * the recent contention on the state.
+     *
+     * <ul>
+     * <li>{@code OPTIMISTIC}: a single attempt checking the version on
+     * commit.</li>
+     * <li>{@code NO_WAIT}: up to {@code state.adaptive.no-wait-attempts}
+     * attempts locking the row with {@code NOWAIT}, after a jittered
+     * backoff.</li>
+     * <li>{@code BLOCKING}: waits for the row lock.</li>
+     * </ul>
+     *
+     * <p>
+     * When the chosen strategy fails on a conflict, the conflict is recorded
+     * and the update falls back to waiting for the row lock, so the caller
+     * sees no more failures than with {@link #updateState(String, State)}.
+     * Each attempt runs in its own transaction.
+     * </p>
+     *
+     * <p>
+     * A lock failure of the fallback is replayed from the choice of the
+     * strategy, and writers in this JVM wait for each other in a local lock
+     * first if enabled, so only the contention with other nodes is tracked.
+     * The wait is timed once the connection has been taken from the pool.
+     * </p>
+     */
+    @CacheEvict(cacheNames = CacheConfig.STATES, key = "#id")
+    @RetryOnLockFailure
+    @LockStatesLocally("#id")
+    public State updateStateAdaptive(String id, State state) {
+        checkState(id, state);
+
+        TransactionTemplate txTemplate = new TransactionTemplate(txManager);
+        switch (contention.strategyOf(id)) {
+            case OPTIMISTIC:
+                try {
+                    return txTemplate.execute(tx -> {
+                        State entity = repo.findById(id).orElseThrow();
+                        copyState(state, entity);
+                        return entity;
+                    });
+                } catch (OptimisticLockingFailureException e) {
+                    contention.recordConflict(id);
+                }
+                break;
+            case NO_WAIT:
+                JitteredBackoff backoff = new JitteredBackoff(optimisticBackoff, optimisticMaxBackoff);
+                for (int attempt = 1; attempt <= noWaitAttempts; attempt++) {
+                    try {
+                        return txTemplate.execute(tx -> {
+                            State entity = repo.findForUpdateNoWaitById(id).orElseThrow();
+                            copyState(state, entity);
+                            return entity;
+                        });
+                    } catch (PessimisticLockingFailureException e) {
+                        contention.recordConflict(id);
+                        if (attempt < noWaitAttempts && !backoff.sleep(attempt)) {
+                            throw e;
+                        }
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+
+        try {
+            return txTemplate.execute(tx -> {
+                // the wait for the pool is not contention on the state
+                EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory)
+                        .unwrap(Session.class).doWork(StateService::connect);
+                long start = System.nanoTime();
+                State entity = repo.findForUpdateById(id).orElseThrow();
+                contention.recordWait(id, Duration.ofNanos(System.nanoTime() - start));
+                copyState(state, entity);
+                return entity;
+            });
+        } catch (PessimisticLockingFailureException e) {
+            contention.recordConflict(id);
+            throw e;
+        }
+    }
+
+    /**
+     * Takes the connection from the pool, also behind a lazy proxy.
+     */
+    private static void connect(Connection con) throws SQLException {
+        if (con instanceof ConnectionProxy proxy) {
+            proxy.getTargetConnection();
+        }
+    }
+
+    /**
+     * Updates many states in one transaction.
+     *
+     * <p>
+     * All the rows are locked with a single {@code SELECT ... FOR UPDATE} in
+     * order of id, and the updates are flushed together with JDBC batching.
+     * </p>
+     *
+     * @return updated states in order of id
+     * @throws NoSuchElementException if any of the states does not exist
+     */
+    @RetryOnLockFailure
+    @LockStatesLocally("#states?.![#this?.id]")
+    @Transactional
+    public List<State> updateStates(List<State> states) {
+        Objects.requireNonNull(states);
+        Map<String, State> statesById = new TreeMap<>();
+        for (State state : states) {
+            Objects.requireNonNull(state);
+            Objects.requireNonNull(state.getId());
+            if (statesById.put(state.getId(), state) != null) {
+                throw new IllegalArgumentException();
+            }
+        }
+
+        SortedMap<String, State> entities = lockStates(statesById.keySet());
+        entities.forEach((id, entity) -> copyState(statesById.get(id), entity));
+
+        return new ArrayList<>(entities.values());
+    }
+
+    /**
+     * Locks the states of {@code ids} and passes them to {@code mutation} in
+     * one transaction.
+     *
+     * <p>
+     * The rows are locked in order of id whatever the order of {@code ids}, so
+     * that transactions locking overlapping states wait for each other instead
+     * of deadlocking. Changes made by {@code mutation} are flushed on commit.
+     * {@code mutation} may be replayed on lock failure, see
+     * {@link RetryOnLockFailure}.
+     * </p>
+     *
+     * @param mutation receives the locked states by id
+     * @return result of {@code mutation}
+     * @throws NoSuchElementException if any of the states does not exist
+     */
+    @RetryOnLockFailure
+    @LockStatesLocally("#ids")
+    @Transactional
+    public <T> T withLockedStates(Collection<String> ids, Function<SortedMap<String, State>, T> mutation) {
+        Objects.requireNonNull(ids);
+        Objects.requireNonNull(mutation);
+        ids.forEach(Objects::requireNonNull);
+
+        return mutation.apply(lockStates(new TreeSet<>(ids)));
+    }
+
+    @CacheEvict(cacheNames = CacheConfig.STATES, key = "#id")
+    @RetryOnLockFailure
+    @LockStatesLocally("#id")
     @Transactional
     public void deleteState(String id) {
         State entity = repo.findForUpdateById(id).orElseThrow();
         repo.delete(entity);
     }
 
+    @CacheEvict(cacheNames = CacheConfig.STATES, key = "#id")
     @Transactional
     public void deleteStateNoWait(String id) {
         State entity = repo.findForUpdateNoWaitById(id).orElseThrow();
         repo.delete(entity);
     }
 
-    public void deleteAllStates() {
-        repo.deleteAll();
+    /**
+     * Deletes all the states without loading them.
+     *
+     * <p>
+     * With {@code state.delete.chunk-size} of {@code 0}, the default, they are
+     * deleted by a single {@code DELETE} statement. Otherwise they are deleted
+     * in chunks, see {@link #deleteAllStates(int)}.
+     * </p>
+     *
+     * @return number of deleted states
+     */
+    @CacheEvict(cacheNames = CacheConfig.STATES, allEntries = true)
+    public int deleteAllStates() {
+        if (deleteChunkSize > 0) {
+            return deleteAllStates(deleteChunkSize);
+        }
+
+        return new TransactionTemplate(txManager).execute(tx -> repo.deleteAllInBulk());
+    }
+
+    /**
+     * Deletes all the states, up to {@code chunkSize} of them per transaction
+     * in order of id, so that no transaction locks more than
+     * {@code chunkSize} rows for long. States inserted concurrently behind the
+     * deleted ones may survive.
+     *
+     * @return number of deleted states
+     */
+    @CacheEvict(cacheNames = CacheConfig.STATES, allEntries = true)
+    public int deleteAllStates(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        TransactionTemplate txTemplate = new TransactionTemplate(txManager);
+        int deleted = 0;
+        String after = "";
+        for (;;) {
+            final String from = after;
+            List<String> ids = txTemplate.execute(tx -> {
+                List<String> chunk = repo.findIdsByIdGreaterThanOrderByIdAsc(from, Limit.of(chunkSize));
+                repo.deleteAllByIdInBatch(chunk);
+                return chunk;
+            });
+            if (ids.isEmpty()) {
+                return deleted;
+            }
+            deleted += ids.size();
+            after = ids.get(ids.size() - 1);
+        }
+    }
+
+    /**
+     * Locks the states with a single {@code SELECT ... FOR UPDATE} in order of
+     * id, and evicts only them from the cache once the transaction commits.
+     */
+    private SortedMap<String, State> lockStates(Set<String> ids) {
+        SortedMap<String, State> entities = new TreeMap<>();
+        for (State entity : repo.findForUpdateByIdInOrderByIdAsc(ids)) {
+            entities.put(entity.getId(), entity);
+        }
+        if (entities.size() != ids.size()) {
+            throw new NoSuchElementException();
+        }
+        Cache states = cacheManager.getCache(CacheConfig.STATES);
+        entities.keySet().forEach(states::evict);
+        return entities;
+    }
+
+    private static void checkState(String id, State state) {
+        Objects.requireNonNull(id);
+        Objects.requireNonNull(state);
+        if (!Objects.equals(id, state.getId())) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    private static void copyState(State source, State target) {
+        target.setName(source.getName());
+        target.setCode(source.getCode());
+        target.setAbbr(source.getAbbr());
     }
 }
@@ -0,0 +1,33 @@
+package com.nabium.examples.jpa.locking;
+
+import lombok.Value;
+
+/**
+ * Read-only projection of {@link State}.
+ *
+ * <p>
+ * Selected with a constructor expression, so Hibernate neither manages it nor
+ * keeps a snapshot of it for dirty checking. Immutable, safe to share from
+ * caches.
+ * </p>
+ */
+@Value
+public class StateView {
+
+    private String id;
+
+    private String name;
+
+    private String code;
+
+    private String abbr;
+
+    private CensusRegion censusRegion;
+
+    private Long version;
+
+    public static StateView of(State state) {
+        return new StateView(state.getId(), state.getName(), state.getCode(), state.getAbbr(),
+                state.getCensusRegion(), state.getVersion());
+    }
+}
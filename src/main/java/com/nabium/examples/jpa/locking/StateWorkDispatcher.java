@@ -0,0 +1,98 @@
+package com.nabium.examples.jpa.locking;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pool of workers claiming batches from a {@link StateWorkQueue} in parallel.
+ *
+ * <p>
+ * Each worker claims and processes a batch in its own transaction, and polls
+ * again right away while there is work. When nothing is claimed, it sleeps for
+ * the poll interval.
+ * </p>
+ */
+@Slf4j
+public class StateWorkDispatcher implements AutoCloseable {
+
+    private final StateWorkQueue queue;
+
+    private final CensusRegion region;
+
+    private final Consumer<State> handler;
+
+    private final int workers;
+
+    private final Duration pollInterval;
+
+    private final Duration lease;
+
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    private ExecutorService executor;
+
+    StateWorkDispatcher(StateWorkQueue queue, CensusRegion region, Consumer<State> handler, int workers,
+            Duration pollInterval, Duration lease) {
+        this.queue = queue;
+        this.region = region;
+        this.handler = handler;
+        this.workers = workers;
+        this.pollInterval = pollInterval;
+        this.lease = lease;
+    }
+
+    public synchronized void start() {
+        if (executor != null) {
+            throw new IllegalStateException("already started");
+        }
+        executor = Executors.newFixedThreadPool(workers);
+        for (int i = 0; i < workers; i++) {
+            executor.execute(this::work);
+        }
+    }
+
+    /**
+     * Stops the workers, waking the ones waiting for the next poll, and waits
+     * for batches in progress up to the lease of a claim, after which their
+     * transactions have timed out. Workers still running are then
+     * interrupted.
+     */
+    @Override
+    public synchronized void close() throws InterruptedException {
+        closed.countDown();
+        if (executor != null) {
+            executor.shutdown();
+            if (!executor.awaitTermination(lease.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("Interrupting workers of {} still running after {}", region, lease);
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private void work() {
+        while (closed.getCount() > 0 && !Thread.currentThread().isInterrupted()) {
+            int claimed = 0;
+            try {
+                claimed = queue.claimAndProcess(region, handler);
+            } catch (RuntimeException e) {
+                log.warn("Failed to process batch of {}", region, e);
+            }
+
+            if (claimed == 0) {
+                try {
+                    if (closed.await(pollInterval.toMillis(), TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.nabium.examples.jpa.locking;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Work queue over the rows of {@code state}, claimed with
+ * {@code SELECT ... FOR UPDATE SKIP LOCKED}.
+ *
+ * <p>
+ * A batch of rows is claimed and processed in one transaction. Concurrent
+ * claimers, in this JVM or in others, skip the rows locked by each other
+ * instead of waiting, so any number of workers can share the queue.
+ * </p>
+ *
+ * <p>
+ * The claiming transaction times out after {@code state.work.lease}. The
+ * timeout applies to statements only: statements issued after it fail, and
+ * no further state is passed to the handler, so the transaction rolls back and
+ * releases the rows. A handler stuck outside of the database keeps the rows
+ * locked and the connection in use until it returns. The rows are released
+ * as well if the worker dies, when the database closes its connection.
+ * </p>
+ *
+ * <p>
+ * The handler must take a row out of the queue, by deleting it or by updating
+ * it so that it no longer matches, otherwise it is claimed again by the next
+ * poll. The claimed states are evicted from {@link CacheConfig#STATES} when
+ * the transaction commits, as the handler may write through the repository.
+ * </p>
+ */
+@Service
+public class StateWorkQueue {
+
+    @Autowired
+    private StateRepository repo;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Value("${state.work.batch-size:10}")
+    private int batchSize;
+
+    @Value("${state.work.lease:30s}")
+    private Duration lease;
+
+    @Value("${state.work.workers:4}")
+    private int workers;
+
+    @Value("${state.work.poll-interval:1s}")
+    private Duration pollInterval;
+
+    /**
+     * Claims up to {@code state.work.batch-size} unlocked states in the region
+     * and passes each of them to the handler in the claiming transaction.
+     *
+     * @return number of claimed states, {@code 0} if there was nothing to claim
+     * @throws TransactionTimedOutException if the batch took longer than
+     *                                      {@code state.work.lease}
+     */
+    public int claimAndProcess(CensusRegion region, Consumer<State> handler) {
+        TransactionTemplate txTemplate = new TransactionTemplate(txManager);
+        txTemplate.setTimeout((int) Math.max(1, lease.toSeconds()));
+
+        return txTemplate.execute(tx -> {
+            Instant deadline = Instant.now().plus(lease);
+            List<State> claimed = repo.findForUpdateSkipLockedByCensusRegionOrderByIdAsc(region,
+                    Limit.of(batchSize));
+            Cache states = cacheManager.getCache(CacheConfig.STATES);
+            for (State state : claimed) {
+                if (Instant.now().isAfter(deadline)) {
+                    throw new TransactionTimedOutException("Lease of " + lease + " expired");
+                }
+                handler.accept(state);
+                states.evict(state.getId());
+            }
+            return claimed.size();
+        });
+    }
+
+    /**
+     * Creates a dispatcher which runs {@code state.work.workers} workers
+     * claiming from the region. Call {@link StateWorkDispatcher#start()} to
+     * start them.
+     */
+    public StateWorkDispatcher dispatcher(CensusRegion region, Consumer<State> handler) {
+        return new StateWorkDispatcher(this, region, handler, workers, pollInterval, lease);
+    }
+}
@@ -0,0 +1,32 @@
+package com.nabium.examples.jpa.locking;
+
+import java.util.List;
+
+/**
+ * Hooks of {@link StateWriteBuffer}, for example to keep buffered updates in a
+ * durable log until they are flushed. Beans of this type are called in their
+ * {@link org.springframework.core.annotation.Order}.
+ */
+public interface StateWriteBehindListener {
+
+    /**
+     * Called in the thread of the caller before {@code update} is buffered.
+     * Throwing rejects the update.
+     */
+    default void onBuffered(State update) {
+    }
+
+    /**
+     * Called after {@code states} have been committed.
+     */
+    default void onFlushed(List<State> states) {
+    }
+
+    /**
+     * Called when the update of a state is dropped, because its lock failed
+     * in every attempt or it failed otherwise, such as when the state was
+     * deleted. It is not buffered again.
+     */
+    default void onFailed(List<State> states, RuntimeException e) {
+    }
+}
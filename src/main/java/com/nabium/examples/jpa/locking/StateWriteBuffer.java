@@ -0,0 +1,312 @@
+package com.nabium.examples.jpa.locking;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Buffers updates of states and writes them behind the caller.
+ *
+ * <p>
+ * Pending updates of the same state are merged, the last non-null value of
+ * each field wins. Every {@code state.write-behind.flush-interval}, or as soon
+ * as {@code state.write-behind.batch-size} states are pending, the buffer is
+ * flushed through {@link StateService#withLockedStates(java.util.Collection,
+ * Function)}: one transaction per batch of up to
+ * {@code state.write-behind.batch-size} states, locking each of them once
+ * however many updates were merged. Reads do not see an update until it is
+ * flushed. The buffer is flushed when it is stopped.
+ * </p>
+ *
+ * <p>
+ * A batch runs in a transaction of its own, so its rows are locked in order
+ * of id without the local locks of {@link StripedStateLockAspect}, which
+ * would stall the other writers of every colliding stripe. When a batch
+ * fails, its states are written one by one. A state whose lock is not
+ * acquired is buffered again, up to {@code state.write-behind.max-attempts}
+ * times, and any other failure drops its update with a warning.
+ * </p>
+ *
+ * <p>
+ * Updates are counted by the {@code state.write-behind} counter, tagged by
+ * {@code outcome}: {@code buffered} for each update, {@code coalesced} when
+ * it was merged into a pending one, {@code flushed} for each state written,
+ * {@code requeued} when it is buffered again and {@code failed} when its
+ * update is dropped.
+ * </p>
+ *
+ * @see StateWriteBehindListener
+ */
+@Slf4j
+@Service
+public class StateWriteBuffer implements SmartLifecycle {
+
+    public static final String METRIC = "state.write-behind";
+
+    /** Stopped after the web server, so that no more updates are buffered */
+    public static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+    @Autowired
+    private StateService service;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    @Autowired
+    private ObjectProvider<StateWriteBehindListener> listeners;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private final Duration flushInterval;
+
+    private final int batchSize;
+
+    private final int maxAttempts;
+
+    private final Map<String, State> pending = new ConcurrentHashMap<>();
+
+    private final Map<String, Integer> attempts = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private volatile ScheduledExecutorService scheduler;
+
+    private volatile boolean closed;
+
+    public StateWriteBuffer(@Value("${state.write-behind.flush-interval:100ms}") Duration flushInterval,
+            @Value("${state.write-behind.batch-size:100}") int batchSize,
+            @Value("${state.write-behind.max-attempts:3}") int maxAttempts) {
+        this.flushInterval = flushInterval;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "state-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushInterval.toMillis(), flushInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Rejects further updates and flushes the pending ones.
+     */
+    @Override
+    public void stop() {
+        closed = true;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return scheduler != null && !scheduler.isShutdown();
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * Buffers an update of the state.
+     *
+     * @throws NoSuchElementException     if the state does not exist
+     * @throws RejectedExecutionException if the buffer is shut down
+     */
+    public void buffer(String id, State state) {
+        Objects.requireNonNull(id);
+        Objects.requireNonNull(state);
+        if (!Objects.equals(id, state.getId())) {
+            throw new IllegalArgumentException();
+        }
+        if (closed) {
+            throw new RejectedExecutionException();
+        }
+        // cached, a state deleted before the flush is dropped then
+        service.getState(id);
+
+        State update = new State();
+        update.setId(id);
+        update.setName(state.getName());
+        update.setCode(state.getCode());
+        update.setAbbr(state.getAbbr());
+        listeners.orderedStream().forEach(listener -> listener.onBuffered(update));
+
+        count("buffered", 1);
+        pending.merge(id, update, (older, newer) -> {
+            count("coalesced", 1);
+            return merge(older, newer);
+        });
+
+        if (pending.size() >= batchSize && scheduler != null && flushRequested.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    /**
+     * Number of states with pending updates.
+     */
+    public int pending() {
+        return pending.size();
+    }
+
+    /**
+     * Writes the states which are pending when called. A state which is
+     * dropped is passed to
+     * {@link StateWriteBehindListener#onFailed(List, RuntimeException)}.
+     *
+     * @return number of states written
+     */
+    public synchronized int flush() {
+        flushRequested.set(false);
+
+        int flushed = 0;
+        List<State> batch = new ArrayList<>();
+        for (String id : new ArrayList<>(pending.keySet())) {
+            State update = pending.remove(id);
+            if (update != null) {
+                batch.add(update);
+            }
+            if (batch.size() >= batchSize) {
+                flushed += write(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            flushed += write(batch);
+        }
+        return flushed;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Failed to flush buffered states", e);
+        }
+    }
+
+    private int write(List<State> batch) {
+        Map<String, State> updates = batch.stream().collect(Collectors.toMap(State::getId, Function.identity()));
+        RuntimeException failure = writeInTransaction(updates);
+        if (failure != null) {
+            if (batch.size() > 1) {
+                log.debug("Failed to write {} buffered states, writing them one by one: {}", batch.size(),
+                        failure.toString());
+                return batch.stream().mapToInt(update -> write(List.of(update))).sum();
+            }
+            requeueOrDrop(batch.get(0), failure);
+            return 0;
+        }
+        batch.forEach(update -> attempts.remove(update.getId()));
+        count("flushed", batch.size());
+        listeners.orderedStream().forEach(listener -> listener.onFlushed(batch));
+        return batch.size();
+    }
+
+    private void requeueOrDrop(State update, RuntimeException e) {
+        int attempt = attempts.merge(update.getId(), 1, Integer::sum);
+        if (e instanceof PessimisticLockingFailureException && attempt < maxAttempts && !closed) {
+            log.debug("Failed to lock buffered state {} in attempt {}, buffered again", update.getId(), attempt);
+            count("requeued", 1);
+            // updates buffered since are newer
+            pending.merge(update.getId(), update, (newer, failed) -> merge(failed, newer));
+            return;
+        }
+        attempts.remove(update.getId());
+        log.warn("Dropped buffered update of state {} after {} attempts", update.getId(), attempt, e);
+        count("failed", 1);
+        listeners.orderedStream().forEach(listener -> listener.onFailed(List.of(update), e));
+    }
+
+    /**
+     * Writes the updates in a transaction of its own, in which the local
+     * locks are not taken.
+     *
+     * @return failure of the write, caught before the rollback, so that a
+     *         failure of the rollback does not replace it
+     */
+    private RuntimeException writeInTransaction(Map<String, State> updates) {
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        try {
+            new TransactionTemplate(txManager).executeWithoutResult(tx -> {
+                try {
+                    service.withLockedStates(updates.keySet(), entities -> {
+                        entities.forEach((id, entity) -> apply(updates.get(id), entity));
+                        return null;
+                    });
+                } catch (RuntimeException e) {
+                    failure.set(e);
+                    tx.setRollbackOnly();
+                }
+            });
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        }
+        return failure.get();
+    }
+
+    private void count(String outcome, int amount) {
+        meterRegistry.ifAvailable(registry -> registry.counter(METRIC, "outcome", outcome).increment(amount));
+    }
+
+    private static State merge(State older, State newer) {
+        State merged = new State();
+        merged.setId(newer.getId());
+        merged.setName(newer.getName() != null ? newer.getName() : older.getName());
+        merged.setCode(newer.getCode() != null ? newer.getCode() : older.getCode());
+        merged.setAbbr(newer.getAbbr() != null ? newer.getAbbr() : older.getAbbr());
+        return merged;
+    }
+
+    private static void apply(State update, State entity) {
+        if (update.getName() != null) {
+            entity.setName(update.getName());
+        }
+        if (update.getCode() != null) {
+            entity.setCode(update.getCode());
+        }
+        if (update.getAbbr() != null) {
+            entity.setAbbr(update.getAbbr());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.nabium.examples.jpa.locking;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Takes in-process locks of the states of {@link LockStatesLocally} methods.
+ *
+ * <p>
+ * States are hashed to a fixed number of {@link ReentrantLock}s, given by
+ * {@code state.local-lock.stripes}. Stripes of many states are locked in order
+ * of index, so that callers do not deadlock each other. Locks are taken
+ * outside of the transaction and inside of {@link LockFailureRetryAspect},
+ * which backs off without holding them. A call inside of an existing
+ * transaction does not lock, as it may already hold row locks another thread
+ * holding the stripe waits for.
+ * </p>
+ *
+ * <p>
+ * A caller waits for its stripes up to {@code state.local-lock.timeout} in
+ * all, like it would wait for the row lock, and fails with
+ * {@link CannotAcquireLockException}. The locks are fair, so that a caller is
+ * not overtaken by later ones until it times out. States colliding on a
+ * stripe wait for each other, even if they are unrelated.
+ * </p>
+ *
+ * <p>
+ * The locks only order the writers of one JVM, the row locks are still taken.
+ * Enabled with {@code state.local-lock.enabled=true}.
+ * </p>
+ */
+@Aspect
+@Component
+@Order(StripedStateLockAspect.ORDER)
+@ConditionalOnProperty(name = "state.local-lock.enabled", havingValue = "true")
+public class StripedStateLockAspect {
+
+    /** Inside of retries, outside of caching and transactions */
+    static final int ORDER = LockFailureRetryAspect.ORDER + 5;
+
+    private final SpelExpressionParser parser = new SpelExpressionParser();
+
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+
+    private final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+
+    private final ReentrantLock[] stripes;
+
+    private final Duration timeout;
+
+    public StripedStateLockAspect(@Value("${state.local-lock.stripes:64}") int stripes,
+            @Value("${state.local-lock.timeout:2s}") Duration timeout) {
+        this.stripes = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new ReentrantLock(true);
+        }
+        this.timeout = timeout;
+    }
+
+    @Around("@annotation(lockStatesLocally)")
+    public Object lock(ProceedingJoinPoint joinPoint, LockStatesLocally lockStatesLocally) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Object ids = expressions.computeIfAbsent(lockStatesLocally.value(), parser::parseExpression)
+                .getValue(new MethodBasedEvaluationContext(null, method, joinPoint.getArgs(),
+                        parameterNameDiscoverer));
+
+        List<ReentrantLock> locks = stripesOf(ids);
+        long deadline = System.nanoTime() + timeout.toNanos();
+        int locked = 0;
+        try {
+            for (ReentrantLock lock : locks) {
+                if (!lock.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    throw new CannotAcquireLockException(
+                            "Timed out after " + timeout + " waiting for local locks of " + ids);
+                }
+                locked++;
+            }
+            return joinPoint.proceed();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
+        }
+    }
+
+    /**
+     * @return locks of the states in order of index, or nothing if
+     *         {@code ids} is {@code null}, so that the method fails as it does
+     *         without the lock
+     */
+    private List<ReentrantLock> stripesOf(Object ids) {
+        SortedSet<Integer> indexes = new TreeSet<>();
+        if (ids instanceof Collection<?> collection) {
+            collection.forEach(id -> indexes.add(indexOf(id)));
+        } else {
+            indexes.add(indexOf(ids));
+        }
+        indexes.remove(-1);
+        return indexes.stream().map(i -> stripes[i]).toList();
+    }
+
+    private int indexOf(Object id) {
+        return id == null ? -1 : Math.floorMod(id.hashCode(), stripes.length);
+    }
+}
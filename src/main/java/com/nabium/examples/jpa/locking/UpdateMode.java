@@ -0,0 +1,19 @@
+package com.nabium.examples.jpa.locking;
+
+/**
+ * How {@link StateService} guards an update against concurrent writers.
+ */
+public enum UpdateMode {
+
+    /** Lock the row with {@code SELECT ... FOR UPDATE} until commit */
+    PESSIMISTIC,
+
+    /** Check {@link State#getVersion()} on commit and retry on conflict */
+    OPTIMISTIC,
+
+    /** Choose by recent contention on the state, see {@link StateContentionTracker} */
+    ADAPTIVE,
+
+    /** Merge with pending updates and write later, see {@link StateWriteBuffer} */
+    WRITE_BEHIND
+}
@@ -0,0 +1,35 @@
+package com.nabium.examples.r2dbc.locking;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.annotation.PropertySource;
+
+/**
+ * R2DBC and WebFlux variant of {@code ExampleApplication}.
+ *
+ * <p>
+ * Waiting for a row lock does not hold a thread with a non-blocking driver,
+ * such as {@code r2dbc-postgresql}. {@code r2dbc-h2} runs the embedded H2 on
+ * the calling thread, so waits on H2 still block.
+ * </p>
+ */
+@SpringBootApplication(exclude = {
+        DataSourceAutoConfiguration.class,
+        DataSourceTransactionManagerAutoConfiguration.class,
+        HibernateJpaAutoConfiguration.class,
+        JpaRepositoriesAutoConfiguration.class
+})
+@PropertySource("classpath:reactive/application.properties")
+public class ReactiveExampleApplication {
+
+    public static void main(String[] args) {
+        new SpringApplicationBuilder(ReactiveExampleApplication.class)
+                .web(WebApplicationType.REACTIVE)
+                .run(args);
+    }
+}
@@ -0,0 +1,46 @@
+package com.nabium.examples.r2dbc.locking;
+
+import org.apache.commons.lang3.BooleanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/state")
+public class ReactiveStateController {
+
+    @Autowired
+    private ReactiveStateService service;
+
+    @GetMapping
+    public Flux<StateRow> listStates() {
+        return service.listStates();
+    }
+
+    @GetMapping("/{id}")
+    public Mono<StateRow> getState(@PathVariable String id) {
+        return service.getState(id);
+    }
+
+    @PutMapping("/{id}")
+    public Mono<StateRow> updateState(@PathVariable String id, @RequestBody StateRow state) {
+        return service.updateState(id, state);
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<Void> deleteState(@PathVariable String id, @RequestParam(defaultValue = "") String noWait) {
+        if (BooleanUtils.toBoolean(noWait)) {
+            return service.deleteStateNoWait(id);
+        }
+        return service.deleteState(id);
+    }
+}
@@ -0,0 +1,22 @@
+package com.nabium.examples.r2dbc.locking;
+
+import com.nabium.examples.jpa.locking.CensusRegion;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Locking queries of {@link ReactiveStateRepository}, the equivalents of the
+ * {@code @Lock} methods of {@code StateRepository}. Must be called in a
+ * transaction.
+ */
+public interface ReactiveStateLocking {
+
+    Mono<StateRow> findForUpdateById(String id);
+
+    Mono<StateRow> findForShareById(String id);
+
+    Mono<StateRow> findForUpdateNoWaitById(String id);
+
+    Flux<StateRow> findForUpdateSkipLockedByCensusRegionOrderByIdAsc(CensusRegion censusRegion, int limit);
+}
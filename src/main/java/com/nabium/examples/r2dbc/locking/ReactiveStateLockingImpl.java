@@ -0,0 +1,86 @@
+package com.nabium.examples.r2dbc.locking;
+
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.dialect.DialectResolver;
+import org.springframework.data.r2dbc.dialect.H2Dialect;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
+import org.springframework.data.r2dbc.dialect.R2dbcDialect;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+
+import com.nabium.examples.jpa.locking.CensusRegion;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Locking clauses are chosen by dialect, as Hibernate does for
+ * {@code StateRepository} (see README). H2 has only {@code FOR UPDATE}, so
+ * {@code NOWAIT} waits for the lock timeout and {@code SKIP LOCKED} waits as
+ * well.
+ *
+ * <p>
+ * Only H2 and PostgreSQL are supported, the drivers on the classpath. The
+ * dialect is resolved when the repository is created, so the application
+ * fails to start with any other database.
+ * </p>
+ */
+class ReactiveStateLockingImpl implements ReactiveStateLocking {
+
+    private static final String SELECT = "SELECT * FROM state ";
+
+    private final R2dbcEntityTemplate template;
+
+    private final LockClauses clauses;
+
+    ReactiveStateLockingImpl(R2dbcEntityTemplate template) {
+        this.template = template;
+        this.clauses = LockClauses.of(DialectResolver.getDialect(template.getDatabaseClient().getConnectionFactory()));
+    }
+
+    @Override
+    public Mono<StateRow> findForUpdateById(String id) {
+        return read(sql("WHERE id = :id " + clauses.forUpdate()).bind("id", id)).next();
+    }
+
+    @Override
+    public Mono<StateRow> findForShareById(String id) {
+        return read(sql("WHERE id = :id " + clauses.forShare()).bind("id", id)).next();
+    }
+
+    @Override
+    public Mono<StateRow> findForUpdateNoWaitById(String id) {
+        return read(sql("WHERE id = :id " + clauses.forUpdateNoWait()).bind("id", id)).next();
+    }
+
+    @Override
+    public Flux<StateRow> findForUpdateSkipLockedByCensusRegionOrderByIdAsc(CensusRegion censusRegion, int limit) {
+        return read(sql("WHERE census_region = :region ORDER BY id LIMIT :limit " + clauses.forUpdateSkipLocked())
+                .bind("region", censusRegion.name())
+                .bind("limit", limit));
+    }
+
+    private GenericExecuteSpec sql(String condition) {
+        return template.getDatabaseClient().sql(SELECT + condition);
+    }
+
+    private Flux<StateRow> read(GenericExecuteSpec spec) {
+        return spec.map((row, metadata) -> template.getConverter().read(StateRow.class, row, metadata)).all();
+    }
+
+    private record LockClauses(String forUpdate, String forShare, String forUpdateNoWait,
+            String forUpdateSkipLocked) {
+
+        static LockClauses of(R2dbcDialect dialect) {
+            // H2Dialect extends PostgresDialect
+            if (dialect instanceof H2Dialect) {
+                return new LockClauses("FOR UPDATE", "FOR UPDATE", "FOR UPDATE", "FOR UPDATE");
+            }
+            if (dialect instanceof PostgresDialect) {
+                return new LockClauses("FOR NO KEY UPDATE", "FOR SHARE", "FOR NO KEY UPDATE NOWAIT",
+                        "FOR NO KEY UPDATE SKIP LOCKED");
+            }
+            throw new IllegalStateException("Unsupported dialect: " + dialect.getClass().getName()
+                    + ", only H2 and PostgreSQL have locking clauses");
+        }
+    }
+}
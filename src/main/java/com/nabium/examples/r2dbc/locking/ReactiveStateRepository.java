@@ -0,0 +1,10 @@
+package com.nabium.examples.r2dbc.locking;
+
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+
+import reactor.core.publisher.Flux;
+
+public interface ReactiveStateRepository extends R2dbcRepository<StateRow, String>, ReactiveStateLocking {
+
+    Flux<StateRow> findByOrderByIdAsc();
+}
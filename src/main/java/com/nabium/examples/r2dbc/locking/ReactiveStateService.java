@@ -0,0 +1,84 @@
+package com.nabium.examples.r2dbc.locking;
+
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.nabium.examples.jpa.locking.CensusRegion;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive variant of {@code StateService}.
+ */
+@Service
+public class ReactiveStateService {
+
+    @Autowired
+    private ReactiveStateRepository repo;
+
+    @Transactional(readOnly = true)
+    public Flux<StateRow> listStates() {
+        return repo.findByOrderByIdAsc();
+    }
+
+    @Transactional(readOnly = true)
+    public Mono<StateRow> getState(String id) {
+        return repo.findById(id).switchIfEmpty(Mono.error(NoSuchElementException::new));
+    }
+
+    @Transactional
+    public Mono<StateRow> updateState(String id, StateRow state) {
+        checkState(id, state);
+
+        return repo.findForUpdateById(id)
+                .switchIfEmpty(Mono.error(NoSuchElementException::new))
+                .flatMap(entity -> {
+                    entity.setName(state.getName());
+                    entity.setCode(state.getCode());
+                    entity.setAbbr(state.getAbbr());
+                    return repo.save(entity);
+                });
+    }
+
+    @Transactional
+    public Mono<Void> deleteState(String id) {
+        return repo.findForUpdateById(id)
+                .switchIfEmpty(Mono.error(NoSuchElementException::new))
+                .flatMap(repo::delete);
+    }
+
+    @Transactional
+    public Mono<Void> deleteStateNoWait(String id) {
+        return repo.findForUpdateNoWaitById(id)
+                .switchIfEmpty(Mono.error(NoSuchElementException::new))
+                .flatMap(repo::delete);
+    }
+
+    /**
+     * Claims up to {@code limit} unlocked states in the region and passes
+     * each of them to the handler in the claiming transaction, as
+     * {@code StateWorkQueue} does.
+     *
+     * @return number of claimed states
+     */
+    @Transactional
+    public Mono<Long> claimAndProcess(CensusRegion region, int limit, Function<StateRow, Mono<?>> handler) {
+        return repo.findForUpdateSkipLockedByCensusRegionOrderByIdAsc(region, limit)
+                .concatMap(state -> handler.apply(state).thenReturn(state))
+                .count();
+    }
+
+    private static void checkState(String id, StateRow state) {
+        Objects.requireNonNull(id);
+        Objects.requireNonNull(state);
+        if (!Objects.equals(id, state.getId())) {
+            throw new IllegalArgumentException();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.nabium.examples.r2dbc.locking;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import com.nabium.examples.jpa.locking.CensusRegion;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Row of {@code state}, mapped by Spring Data R2DBC.
+ *
+ * @see com.nabium.examples.jpa.locking.State
+ */
+@Data
+@NoArgsConstructor
+@Table("state")
+public class StateRow {
+
+    @Id
+    private String id;
+
+    private String name;
+
+    private String code;
+
+    private String abbr;
+
+    @Column("census_region")
+    private CensusRegion censusRegion;
+
+    /** Version for optimistic locking, incremented on every update */
+    @Version
+    private Long version;
+}
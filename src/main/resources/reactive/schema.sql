@@ -0,0 +1,8 @@
+CREATE TABLE IF NOT EXISTS state (
+    id VARCHAR(2) NOT NULL PRIMARY KEY,
+    name VARCHAR(24) NOT NULL UNIQUE,
+    code VARCHAR(2) NOT NULL UNIQUE,
+    abbr VARCHAR(6) NOT NULL UNIQUE,
+    census_region VARCHAR(9) NOT NULL,
+    version BIGINT NOT NULL
+);
@@ -5,11 +5,16 @@ import static org.assertj.core.api.Assertions.*;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.sql.DataSource;
 
@@ -44,9 +49,15 @@ import org.springframework.transaction.support.TransactionTemplate;
  * {@link #runSqlStatements(String...)}</li>
  * <li>To use an {@code ExecutorService} to run test codes in separate thread:
  * {@link #withSingleThreadExecutor(ThrowingConsumer)}</li>
+ * <li>To use an {@code ExecutorService} which runs each task in its own
+ * virtual thread, Java 21 or later:
+ * {@link #withVirtualThreadExecutor(ThrowingConsumer)}</li>
  * <li>To submit a task to the {@code ExecutorService} with newly created
  * transaction:
  * {@link #submitWithTran(ExecutorService, Callable)}
+ * <li>To run a mix of operations from many threads started together and
+ * report their latencies, throughput and failures:
+ * {@link #runContention(ContentionScenario)}</li>
  * </ul>
  *
  * <p>
@@ -197,7 +208,31 @@ public interface ConcurrentTestMixin {
 
     default void withSingleThreadExecutor(ThrowingConsumer<ExecutorService> body, long timeout, TimeUnit unit)
             throws InterruptedException {
-        ExecutorService executor = Executors.newSingleThreadExecutor();
+        withExecutor(Executors.newSingleThreadExecutor(), body, timeout, unit);
+    }
+
+    default void withVirtualThreadExecutor(ThrowingConsumer<ExecutorService> body) throws InterruptedException {
+        withVirtualThreadExecutor(body, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Runs test with an {@code ExecutorService} which starts a new virtual
+     * thread for each task.
+     *
+     * <p>
+     * Tasks waiting for a lock park their virtual thread instead of occupying a
+     * platform thread, so thousands of waiters can be submitted.
+     * </p>
+     *
+     * @throws UnsupportedOperationException if not run on Java 21 or later
+     */
+    default void withVirtualThreadExecutor(ThrowingConsumer<ExecutorService> body, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        withExecutor(newVirtualThreadPerTaskExecutor(), body, timeout, unit);
+    }
+
+    private void withExecutor(ExecutorService executor, ThrowingConsumer<ExecutorService> body, long timeout,
+            TimeUnit unit) throws InterruptedException {
         try {
             body.accept(executor);
         } finally {
@@ -209,4 +244,71 @@ public interface ConcurrentTestMixin {
     default <T> Future<T> submitWithTran(ExecutorService executor, Callable<T> task) {
         return executor.submit(() -> callWithTran(task));
     }
+
+    /**
+     * Runs {@code scenario} and reports the latencies, throughput and failures
+     * of its operations.
+     *
+     * <p>
+     * All the threads wait on a start barrier, so that their first
+     * transactions conflict. Failures of operations are recorded and do not
+     * stop the threads.
+     * </p>
+     *
+     * @throws TimeoutException if the scenario did not end in 60 seconds
+     */
+    default ContentionReport runContention(ContentionScenario scenario) throws Exception {
+        ContentionReport report = new ContentionReport();
+        CyclicBarrier start = new CyclicBarrier(scenario.threads());
+        ExecutorService executor = Executors.newFixedThreadPool(scenario.threads());
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < scenario.threads(); i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    long started = System.nanoTime();
+                    for (int j = 0; j < scenario.operationsPerThread(); j++) {
+                        ContentionScenario.Operation operation = scenario.nextOperation();
+                        String id = scenario.nextId();
+                        Throwable failure = null;
+                        long operationStarted = System.nanoTime();
+                        try {
+                            runWithTran(() -> operation.action().accept(id), scenario.rollback());
+                        } catch (RuntimeException e) {
+                            failure = e;
+                        }
+                        report.record(operation.name(), System.nanoTime() - operationStarted, failure);
+                    }
+                    return started;
+                }));
+            }
+
+            // one deadline for all the threads, not 60 seconds each
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            long started = Long.MAX_VALUE;
+            for (Future<Long> future : futures) {
+                started = Math.min(started, future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+            }
+            report.elapsed(Duration.ofNanos(System.nanoTime() - started));
+            return report;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * {@code Executors.newVirtualThreadPerTaskExecutor()}, looked up reflectively
+     * as the project is built for Java 17.
+     *
+     * @throws UnsupportedOperationException if not run on Java 21 or later
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later", e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
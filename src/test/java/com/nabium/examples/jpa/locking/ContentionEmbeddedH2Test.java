@@ -0,0 +1,135 @@
+package com.nabium.examples.jpa.locking;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Test {@link ConcurrentTestMixin#runContention(ContentionScenario)} and the
+ * executors of {@link ConcurrentTestMixin} with Embedded H2 Database.
+ */
+@Slf4j
+@TestMethodOrder(MethodOrderer.MethodName.class)
+@SpringBootTest(properties = {
+        // shorter than the locks held in test02
+        "spring.datasource.url=jdbc:h2:mem:contention;LOCK_TIMEOUT=500;DB_CLOSE_ON_EXIT=FALSE"
+})
+public class ContentionEmbeddedH2Test implements ConcurrentTestMixin {
+
+    @Getter
+    @Autowired
+    private TransactionTemplate txTemplate;
+
+    @Getter
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private StateRepository repo;
+
+    private Resource setupStates = new ClassPathResource("/setup_states.sql");
+
+    @Test
+    public void test01_runContention_with_short_locks_succeeds() throws Exception {
+        log.info("ENTER test01_runContention_with_short_locks_succeeds()");
+
+        try {
+            runSqlScripts(setupStates);
+
+            ContentionReport report = runContention(new ContentionScenario()
+                    .threads(8)
+                    .operationsPerThread(20)
+                    .hotIds("CA")
+                    .coldIds("AL", "WY", "TX", "NY")
+                    .operation("findForUpdateById", 3, id -> {
+                        repo.findForUpdateById(id).orElseThrow();
+                        Thread.sleep(1);
+                    })
+                    .operation("findForShareById", 1, id -> repo.findForShareById(id).orElseThrow()));
+            log.info("{}", report);
+
+            assertThat(report.count()).isEqualTo(8 * 20);
+            assertThat(report.failures()).isZero();
+            assertThat(report.throughput()).isPositive();
+            assertThat(report.latency("findForUpdateById", 0.99)).isLessThan(Duration.ofSeconds(2));
+        } finally {
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test02_runContention_with_long_locks_on_hot_id_times_out() throws Exception {
+        log.info("ENTER test02_runContention_with_long_locks_on_hot_id_times_out()");
+
+        try {
+            runSqlScripts(setupStates);
+
+            ContentionReport report = runContention(new ContentionScenario()
+                    .threads(6)
+                    .operationsPerThread(1)
+                    .hotIds("CA")
+                    .hotRatio(1)
+                    .operation("findForUpdateById", 1, id -> {
+                        repo.findForUpdateById(id).orElseThrow();
+                        Thread.sleep(1000);
+                    }));
+            log.info("{}", report);
+
+            // H2 gives up after 500 milliseconds, waiters behind a holder time out
+            assertThat(report.count("findForUpdateById")).isEqualTo(6);
+            assertThat(report.failures()).isPositive();
+            assertThat(report.failures("findForUpdateById")).isNotEmpty();
+            assertThat(report.maxLatency("findForUpdateById")).isGreaterThanOrEqualTo(Duration.ofMillis(500));
+        } finally {
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test03_withVirtualThreadExecutor_runs_lock_waiters_on_virtual_threads() throws Exception {
+        log.info("ENTER test03_withVirtualThreadExecutor_runs_lock_waiters_on_virtual_threads()");
+
+        if (Runtime.version().feature() < 21) {
+            assertThatThrownBy(() -> withVirtualThreadExecutor(executor -> {
+            })).isInstanceOf(UnsupportedOperationException.class);
+            return;
+        }
+
+        try {
+            runSqlScripts(setupStates);
+
+            withVirtualThreadExecutor(executor -> {
+                List<Future<Boolean>> futures = new ArrayList<>();
+                for (int i = 0; i < 50; i++) {
+                    futures.add(submitWithTran(executor, () -> {
+                        repo.findForUpdateById("CA").orElseThrow();
+                        return (Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread());
+                    }));
+                }
+                for (Future<Boolean> future : futures) {
+                    assertThat(future.get(30, TimeUnit.SECONDS)).isTrue();
+                }
+            });
+        } finally {
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+}
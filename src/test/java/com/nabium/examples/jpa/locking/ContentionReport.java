@@ -0,0 +1,123 @@
+package com.nabium.examples.jpa.locking;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Result of {@link ConcurrentTestMixin#runContention(ContentionScenario)}.
+ *
+ * <p>
+ * Latencies are recorded per operation in Micrometer timers, including failed
+ * calls, with the 50th, 95th and 99th percentiles. Failures are counted per
+ * operation and category, which is the simple name of the exception, such as
+ * {@code PessimisticLockingFailureException}.
+ * </p>
+ */
+public class ContentionReport {
+
+    private static final double[] PERCENTILES = { 0.5, 0.95, 0.99 };
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final ConcurrentMap<String, ConcurrentMap<String, LongAdder>> failures = new ConcurrentHashMap<>();
+
+    private Duration elapsed = Duration.ZERO;
+
+    void record(String operation, long nanos, Throwable failure) {
+        timer(operation).record(nanos, TimeUnit.NANOSECONDS);
+        if (failure != null) {
+            failures.computeIfAbsent(operation, k -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(failure.getClass().getSimpleName(), k -> new LongAdder())
+                    .increment();
+        }
+    }
+
+    void elapsed(Duration elapsed) {
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * @return wall time from the start barrier to the end of the last operation
+     */
+    public Duration elapsed() {
+        return elapsed;
+    }
+
+    public long count() {
+        return registry.find("contention").timers().stream().mapToLong(Timer::count).sum();
+    }
+
+    public long count(String operation) {
+        return timer(operation).count();
+    }
+
+    /**
+     * @return operations per second, failed ones included
+     */
+    public double throughput() {
+        return elapsed.isZero() ? 0 : count() * 1e9 / elapsed.toNanos();
+    }
+
+    /**
+     * @param percentile one of 0.5, 0.95 and 0.99
+     */
+    public Duration latency(String operation, double percentile) {
+        return Arrays.stream(timer(operation).takeSnapshot().percentileValues())
+                .filter(value -> value.percentile() == percentile)
+                .findFirst()
+                .map(value -> Duration.ofNanos((long) value.value(TimeUnit.NANOSECONDS)))
+                .orElseThrow(() -> new IllegalArgumentException("Not recorded: " + percentile));
+    }
+
+    public Duration maxLatency(String operation) {
+        return Duration.ofNanos((long) timer(operation).max(TimeUnit.NANOSECONDS));
+    }
+
+    public long failures() {
+        return failures.values().stream()
+                .flatMap(categories -> categories.values().stream())
+                .mapToLong(LongAdder::sum)
+                .sum();
+    }
+
+    /**
+     * @return failures of the operation by category
+     */
+    public Map<String, Long> failures(String operation) {
+        Map<String, Long> counts = new TreeMap<>();
+        failures.getOrDefault(operation, new ConcurrentHashMap<>()).forEach((k, v) -> counts.put(k, v.sum()));
+        return counts;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d operations in %d ms, %.1f/s%n", count(), elapsed.toMillis(), throughput()));
+        for (Timer timer : registry.find("contention").timers()) {
+            String operation = timer.getId().getTag("operation");
+            sb.append(String.format("  %s: %d calls", operation, timer.count()));
+            for (ValueAtPercentile value : timer.takeSnapshot().percentileValues()) {
+                sb.append(String.format(", p%.0f %.1f ms", value.percentile() * 100, value.value(TimeUnit.MILLISECONDS)));
+            }
+            sb.append(String.format(", failures %s%n", failures(operation)));
+        }
+        return sb.toString();
+    }
+
+    private Timer timer(String operation) {
+        return Timer.builder("contention")
+                .tag("operation", operation)
+                .publishPercentiles(PERCENTILES)
+                .register(registry);
+    }
+}
@@ -0,0 +1,127 @@
+package com.nabium.examples.jpa.locking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.assertj.core.api.ThrowingConsumer;
+
+/**
+ * Scenario of {@link ConcurrentTestMixin#runContention(ContentionScenario)}.
+ *
+ * <p>
+ * Each of {@code threads} threads runs {@code operationsPerThread}
+ * operations, each in its own transaction. An operation is picked by weight
+ * from the mix and called with one of the hot ids, with probability
+ * {@code hotRatio}, or one of the cold ids.
+ * </p>
+ *
+ * <pre class="code">
+ * new ContentionScenario()
+ *         .threads(16)
+ *         .hotIds("CA")
+ *         .coldIds("AL", "WY")
+ *         .operation("update", 3, id -&gt; repo.findForUpdateById(id))
+ *         .operation("share", 1, id -&gt; repo.findForShareById(id));
+ * </pre>
+ */
+public class ContentionScenario {
+
+    record Operation(String name, int weight, ThrowingConsumer<String> action) {
+    }
+
+    private int threads = 8;
+
+    private int operationsPerThread = 10;
+
+    private List<String> hotIds = List.of();
+
+    private List<String> coldIds = List.of();
+
+    private double hotRatio = 0.8;
+
+    private boolean rollback = true;
+
+    private final List<Operation> operations = new ArrayList<>();
+
+    private int totalWeight;
+
+    public ContentionScenario threads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public ContentionScenario operationsPerThread(int operationsPerThread) {
+        this.operationsPerThread = operationsPerThread;
+        return this;
+    }
+
+    public ContentionScenario hotIds(String... hotIds) {
+        this.hotIds = List.of(hotIds);
+        return this;
+    }
+
+    public ContentionScenario coldIds(String... coldIds) {
+        this.coldIds = List.of(coldIds);
+        return this;
+    }
+
+    /**
+     * @param hotRatio probability of a hot id, 1 to use only the hot ids
+     */
+    public ContentionScenario hotRatio(double hotRatio) {
+        this.hotRatio = hotRatio;
+        return this;
+    }
+
+    /**
+     * @param rollback whether the transaction of each operation is rolled back,
+     *                 {@code true} by default
+     */
+    public ContentionScenario rollback(boolean rollback) {
+        this.rollback = rollback;
+        return this;
+    }
+
+    /**
+     * Adds an operation to the mix.
+     *
+     * @param name   name of the operation in the report
+     * @param weight relative frequency of the operation
+     * @param action called with an id in a new transaction
+     */
+    public ContentionScenario operation(String name, int weight, ThrowingConsumer<String> action) {
+        operations.add(new Operation(name, weight, action));
+        totalWeight += weight;
+        return this;
+    }
+
+    int threads() {
+        return threads;
+    }
+
+    int operationsPerThread() {
+        return operationsPerThread;
+    }
+
+    boolean rollback() {
+        return rollback;
+    }
+
+    Operation nextOperation() {
+        int weight = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Operation operation : operations) {
+            weight -= operation.weight();
+            if (weight < 0) {
+                return operation;
+            }
+        }
+        throw new IllegalStateException("No operation");
+    }
+
+    String nextId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<String> ids = coldIds.isEmpty() || !hotIds.isEmpty() && random.nextDouble() < hotRatio ? hotIds : coldIds;
+        return ids.get(random.nextInt(ids.size()));
+    }
+}
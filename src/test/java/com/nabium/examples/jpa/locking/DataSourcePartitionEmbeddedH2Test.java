@@ -0,0 +1,105 @@
+package com.nabium.examples.jpa.locking;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Test {@link DataSourceConfig} with Embedded H2 Database.
+ */
+@Slf4j
+@TestMethodOrder(MethodOrderer.MethodName.class)
+@SpringBootTest(properties = {
+        "state.datasource.partitioned=true",
+        "state.datasource.write.maximum-pool-size=2",
+        "state.datasource.read.maximum-pool-size=2",
+        // to minimize delay of the starved writer
+        "spring.datasource.hikari.connection-timeout=250",
+})
+public class DataSourcePartitionEmbeddedH2Test implements ConcurrentTestMixin {
+
+    @Getter
+    @Autowired
+    private TransactionTemplate txTemplate;
+
+    @Getter
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private StateRepository repo;
+
+    @Autowired
+    private StateService service;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Resource setupStates = new ClassPathResource("/setup_states.sql");
+
+    @Test
+    public void test01_reads_flow_while_write_pool_is_exhausted() throws Exception {
+        log.info("ENTER test01_reads_flow_while_write_pool_is_exhausted()");
+
+        final int writers = 2;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch holding = new CountDownLatch(writers);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            runSqlScripts(setupStates);
+
+            // writers hold every connection of the write pool
+            List<Future<?>> futures = new ArrayList<>();
+            for (String stateId : List.of("AL", "WY")) {
+                futures.add(submitWithTran(executor, () -> {
+                    repo.findForUpdateById(stateId).orElseThrow();
+                    holding.countDown();
+                    return release.await(10, TimeUnit.SECONDS);
+                }));
+            }
+            assertThat(holding.await(10, TimeUnit.SECONDS)).isTrue();
+
+            // the miss of the cache is read-only, without a replica from the read pool
+            assertThat(service.getState("CA").getName()).isEqualTo("California");
+            // connection is taken from the pool on the first statement
+            assertThatThrownBy(() -> runWithTran(() -> repo.findForUpdateById("TX")))
+                    .hasRootCauseInstanceOf(SQLTransientConnectionException.class);
+
+            release.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+
+            assertThat(meterRegistry.get("hikaricp.connections.acquire").tag("pool", DataSourceConfig.WRITE).timer()
+                    .count()).isPositive();
+            assertThat(meterRegistry.get("hikaricp.connections.acquire").tag("pool", DataSourceConfig.READ).timer()
+                    .count()).isPositive();
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+}
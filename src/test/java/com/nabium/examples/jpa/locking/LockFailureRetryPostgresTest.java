@@ -0,0 +1,109 @@
+package com.nabium.examples.jpa.locking;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Test {@link LockFailureRetryAspect} with real lock failures of PostgreSQL.
+ */
+@Slf4j
+@Testcontainers
+@TestMethodOrder(MethodOrderer.MethodName.class)
+@SpringBootTest
+public class LockFailureRetryPostgresTest implements ConcurrentTestMixin {
+
+    @Getter
+    @Autowired
+    private TransactionTemplate txTemplate;
+
+    @Getter
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private StateService service;
+
+    @Autowired
+    private StateRepository repo;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Resource setupStates = new ClassPathResource("/setup_states.sql");
+
+    @Container
+    static PostgreSQLContainer<?> pgsql = new PostgreSQLContainer<>("postgres:16");
+
+    @DynamicPropertySource
+    static void pgsqlProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", pgsql::getJdbcUrl);
+        registry.add("spring.datasource.username", pgsql::getUsername);
+        registry.add("spring.datasource.password", pgsql::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+    }
+
+    @Test
+    public void test01_updateStates_as_deadlock_victim_is_replayed() throws Exception {
+        log.info("ENTER test01_updateStates_as_deadlock_victim_is_replayed()");
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            runSqlScripts(setupStates);
+            State alabama = repo.findById("AL").orElseThrow();
+            State wyoming = repo.findById("WY").orElseThrow();
+            alabama.setName("Alabama!");
+            wyoming.setName("Wyoming!");
+            double recovered = retries("recovered");
+
+            // locks WY, then AL after updateStates has locked AL and waits for WY
+            Future<?> holder = submitWithTran(executor, () -> {
+                repo.findForUpdateById("WY").orElseThrow();
+                Thread.sleep(300);
+                repo.findForUpdateById("AL").orElseThrow();
+                return null;
+            });
+            Thread.sleep(100);
+
+            // waits first, so its deadlock_timeout expires first and it is the victim
+            service.updateStates(List.of(wyoming, alabama));
+            holder.get(10, TimeUnit.SECONDS);
+
+            assertThat(repo.findById("AL").orElseThrow().getName()).isEqualTo("Alabama!");
+            assertThat(repo.findById("WY").orElseThrow().getName()).isEqualTo("Wyoming!");
+            assertThat(retries("recovered")).isEqualTo(recovered + 1);
+        } finally {
+            executor.shutdownNow();
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    private double retries(String outcome) {
+        return meterRegistry.counter(LockFailureRetryAspect.METRIC,
+                "method", "updateStates", "outcome", outcome).count();
+    }
+}
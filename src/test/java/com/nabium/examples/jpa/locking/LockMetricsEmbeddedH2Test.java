@@ -0,0 +1,119 @@
+package com.nabium.examples.jpa.locking;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Test {@link LockMetricsAspect} with Embedded H2 Database.
+ */
+@Slf4j
+@TestMethodOrder(MethodOrderer.MethodName.class)
+@SpringBootTest
+public class LockMetricsEmbeddedH2Test implements ConcurrentTestMixin {
+
+    @Getter
+    @Autowired
+    private TransactionTemplate txTemplate;
+
+    @Getter
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private StateRepository repo;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Resource setupStates = new ClassPathResource("/setup_states.sql");
+
+    @Test
+    public void test01_findForUpdateById_records_success() {
+        log.info("ENTER test01_findForUpdateById_records_success()");
+
+        final String stateId = "AL";
+        testWithTran(() -> {
+            runSqlScripts(setupStates);
+        }, () -> {
+            Timer before = meterRegistry.find(LockMetricsAspect.METRIC)
+                    .tag("method", "findForUpdateById")
+                    .tag("outcome", "success")
+                    .timer();
+            long count = before == null ? 0 : before.count();
+
+            repo.findForUpdateById(stateId).orElseThrow();
+            // methods without @Lock are not recorded
+            repo.findById(stateId).orElseThrow();
+
+            Timer timer = lockWait("findForUpdateById", "success");
+            assertThat(timer.count()).isEqualTo(count + 1);
+            assertThat(timer.getId().getTag("mode")).isEqualTo("PESSIMISTIC_WRITE");
+            assertThat(timer.getId().getTag("timeout")).isEqualTo("none");
+            assertThat(timer.getId().getTag("dialect")).isEqualTo("H2Dialect");
+            assertThat(meterRegistry.find(LockMetricsAspect.METRIC).tag("method", "findById").timer()).isNull();
+        }, () -> {
+            runSqlStatements("DELETE FROM state");
+        });
+    }
+
+    @Test
+    public void test02_findForUpdateWithTimeoutById_with_conflict_records_timeout() {
+        log.info("ENTER test02_findForUpdateWithTimeoutById_with_conflict_records_timeout()");
+
+        final String stateId = "AL";
+        testWithTran(() -> {
+            runSqlScripts(setupStates);
+        }, () -> {
+            repo.findForShareById(stateId).orElseThrow();
+
+            Timer before = meterRegistry.find(LockMetricsAspect.METRIC)
+                    .tag("method", "findForUpdateWithTimeoutById")
+                    .tag("outcome", "timeout")
+                    .timer();
+            long count = before == null ? 0 : before.count();
+            double totalTime = before == null ? 0 : before.totalTime(TimeUnit.NANOSECONDS);
+
+            withSingleThreadExecutor(executor -> {
+                Future<?> future = submitWithTran(executor, () -> repo.findForUpdateWithTimeoutById(stateId));
+                assertThatThrownBy(() -> future.get(10, TimeUnit.SECONDS))
+                        .isExactlyInstanceOf(ExecutionException.class);
+            });
+
+            // lock times out after 2.9 seconds, enforced by LockTimeoutAspect
+            Timer timer = lockWait("findForUpdateWithTimeoutById", "timeout");
+            assertThat(timer.count()).isEqualTo(count + 1);
+            assertThat(timer.getId().getTag("timeout")).isEqualTo("2900");
+            assertThat(Duration.ofNanos((long) (timer.totalTime(TimeUnit.NANOSECONDS) - totalTime)))
+                    .isGreaterThanOrEqualTo(Duration.ofSeconds(2));
+        }, () -> {
+            runSqlStatements("DELETE FROM state");
+        });
+    }
+
+    private Timer lockWait(String method, String outcome) {
+        return meterRegistry.get(LockMetricsAspect.METRIC)
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .timer();
+    }
+}
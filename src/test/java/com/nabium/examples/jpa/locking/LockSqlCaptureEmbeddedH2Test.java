@@ -0,0 +1,79 @@
+package com.nabium.examples.jpa.locking;
+
+import static org.assertj.core.api.Assertions.*;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Test {@link LockSqlCapture} with Embedded H2 Database.
+ */
+@Slf4j
+@TestMethodOrder(MethodOrderer.MethodName.class)
+@SpringBootTest
+public class LockSqlCaptureEmbeddedH2Test implements ConcurrentTestMixin {
+
+    @Getter
+    @Autowired
+    private TransactionTemplate txTemplate;
+
+    @Getter
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private StateRepository repo;
+
+    @Autowired
+    private LockSqlEndpoint endpoint;
+
+    private Resource setupStates = new ClassPathResource("/setup_states.sql");
+
+    @Test
+    public void test01_lock_methods_capture_sql_of_dialect() {
+        log.info("ENTER test01_lock_methods_capture_sql_of_dialect()");
+
+        try {
+            runSqlScripts(setupStates);
+            long before = endpoint.lockSql("findForUpdateById") != null
+                    ? endpoint.lockSql("findForUpdateById").statements().get(0).count()
+                    : 0;
+
+            txTemplate.executeWithoutResult(tx -> {
+                repo.findForUpdateById("AL").orElseThrow();
+                repo.findForShareById("AK").orElseThrow();
+            });
+            // not a @Lock method
+            repo.countByCensusRegion(CensusRegion.SOUTH);
+
+            LockSql forUpdate = endpoint.lockSql("findForUpdateById");
+            assertThat(forUpdate.mode()).isEqualTo("PESSIMISTIC_WRITE");
+            assertThat(forUpdate.timeout()).isEqualTo(LockHints.NONE);
+            assertThat(forUpdate.dialect()).isEqualTo("H2Dialect");
+            assertThat(forUpdate.statements()).hasSize(1);
+            LockSql.Statement statement = forUpdate.statements().get(0);
+            assertThat(statement.sql()).containsIgnoringCase("for update");
+            assertThat(statement.count()).isEqualTo(before + 1);
+            assertThat(statement.maxMillis()).isGreaterThanOrEqualTo(statement.meanMillis());
+
+            assertThat(endpoint.lockSql("findForShareById").mode()).isEqualTo("PESSIMISTIC_READ");
+            assertThat(endpoint.lockSql()).extracting(LockSql::method)
+                    .contains("findForShareById", "findForUpdateById")
+                    .doesNotContain("countByCensusRegion");
+            assertThat(endpoint.lockSql("countByCensusRegion")).isNull();
+        } finally {
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+}
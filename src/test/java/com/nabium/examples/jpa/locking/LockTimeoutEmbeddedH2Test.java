@@ -0,0 +1,98 @@
+package com.nabium.examples.jpa.locking;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Test {@link LockTimeoutAspect} with Embedded H2 Database.
+ */
+@Slf4j
+@TestMethodOrder(MethodOrderer.MethodName.class)
+@SpringBootTest
+public class LockTimeoutEmbeddedH2Test implements ConcurrentTestMixin {
+
+    @Getter
+    @Autowired
+    private TransactionTemplate txTemplate;
+
+    @Getter
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StateRepository repo;
+
+    private Resource setupStates = new ClassPathResource("/setup_states.sql");
+
+    @Test
+    public void test01_findForUpdateWithTimeout3100ById_with_conflict_fails_after_3100ms() {
+        log.info("ENTER test01_findForUpdateWithTimeout3100ById_with_conflict_fails_after_3100ms()");
+
+        final String stateId = "AL";
+        testWithTran(() -> {
+            runSqlScripts(setupStates);
+        }, () -> {
+            repo.findForShareById(stateId).orElseThrow();
+
+            withSingleThreadExecutor(executor -> {
+                Instant started = Instant.now();
+                Future<?> future = submitWithTran(executor, () -> repo.findForUpdateWithTimeout3100ById(stateId));
+
+                // H2 gives up after 2 seconds by default, the timeout of the hint is enforced
+                assertThatThrownBy(() -> future.get(10, TimeUnit.SECONDS))
+                        .isExactlyInstanceOf(ExecutionException.class)
+                        .cause()
+                        .satisfiesAnyOf(
+                                e -> assertThat(e).isInstanceOf(PessimisticLockingFailureException.class),
+                                e -> assertThat(e).hasRootCauseMessage("Connection is closed"));
+
+                Duration duration = Duration.between(started, Instant.now());
+                assertThat(duration).isBetween(Duration.ofMillis(3100), Duration.ofSeconds(6));
+            });
+        }, () -> {
+            runSqlStatements("DELETE FROM state");
+        });
+    }
+
+    @Test
+    public void test02_findForUpdateWithTimeoutById_restores_lock_timeout() {
+        log.info("ENTER test02_findForUpdateWithTimeoutById_restores_lock_timeout()");
+
+        final String stateId = "AL";
+        testWithTran(() -> {
+            runSqlScripts(setupStates);
+        }, () -> {
+            long lockTimeout = jdbcTemplate.queryForObject("SELECT LOCK_TIMEOUT()", Long.class);
+
+            repo.findForUpdateWithTimeoutById(stateId).orElseThrow();
+
+            assertThat(jdbcTemplate.queryForObject("SELECT LOCK_TIMEOUT()", Long.class)).isEqualTo(lockTimeout);
+        }, () -> {
+            runSqlStatements("DELETE FROM state");
+        });
+    }
+}
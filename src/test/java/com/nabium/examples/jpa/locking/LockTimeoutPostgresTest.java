@@ -0,0 +1,79 @@
+package com.nabium.examples.jpa.locking;
+
+import static org.assertj.core.api.Assertions.*;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Test {@link LockTimeoutAspect} with PostgreSQL.
+ */
+@Slf4j
+@Testcontainers
+@TestMethodOrder(MethodOrderer.MethodName.class)
+@SpringBootTest
+public class LockTimeoutPostgresTest implements ConcurrentTestMixin {
+
+    @Getter
+    @Autowired
+    private TransactionTemplate txTemplate;
+
+    @Getter
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StateRepository repo;
+
+    private Resource setupStates = new ClassPathResource("/setup_states.sql");
+
+    @Container
+    static PostgreSQLContainer<?> pgsql = new PostgreSQLContainer<>("postgres:16");
+
+    @DynamicPropertySource
+    static void pgsqlProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", pgsql::getJdbcUrl);
+        registry.add("spring.datasource.username", pgsql::getUsername);
+        registry.add("spring.datasource.password", pgsql::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+    }
+
+    @Test
+    public void test01_findForUpdateWithTimeoutById_restores_lock_timeout_in_transaction() {
+        log.info("ENTER test01_findForUpdateWithTimeoutById_restores_lock_timeout_in_transaction()");
+
+        final String stateId = "AL";
+        testWithTran(() -> {
+            runSqlScripts(setupStates);
+        }, () -> {
+            String lockTimeout = jdbcTemplate.queryForObject("SHOW lock_timeout", String.class);
+
+            repo.findForUpdateWithTimeoutById(stateId).orElseThrow();
+
+            // later statements of the transaction do not run with the 2900ms of the hint
+            assertThat(jdbcTemplate.queryForObject("SHOW lock_timeout", String.class)).isEqualTo(lockTimeout);
+        }, () -> {
+            runSqlStatements("DELETE FROM state");
+        });
+    }
+}
@@ -30,7 +30,10 @@ import lombok.extern.slf4j.Slf4j;
  */
 @Slf4j
 @TestMethodOrder(MethodOrderer.MethodName.class)
-@SpringBootTest
+@SpringBootTest(properties = {
+        // test behaviour of @Lock itself
+        "state.lock.timeout.enforce=false"
+})
 public class LockingEmbeddedH2Test implements ConcurrentTestMixin {
 
     @Getter
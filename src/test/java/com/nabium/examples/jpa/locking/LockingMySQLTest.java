@@ -36,7 +36,10 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 @Testcontainers
 @TestMethodOrder(MethodOrderer.MethodName.class)
-@SpringBootTest
+@SpringBootTest(properties = {
+        // test behaviour of @Lock itself
+        "state.lock.timeout.enforce=false"
+})
 public class LockingMySQLTest implements ConcurrentTestMixin {
 
     @Getter
@@ -0,0 +1,134 @@
+package com.nabium.examples.jpa.locking;
+
+import static org.assertj.core.api.Assertions.*;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Test routing of reads to a replica by {@link DataSourceConfig}, with a
+ * second Embedded H2 Database as the replica. The replica is not replicated,
+ * its rows tell which database was read.
+ */
+@Slf4j
+@TestMethodOrder(MethodOrderer.MethodName.class)
+@SpringBootTest(properties = {
+        "state.datasource.replica.url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1",
+        "state.datasource.replica.username=sa",
+})
+public class ReplicaRoutingEmbeddedH2Test implements ConcurrentTestMixin {
+
+    @Getter
+    @Autowired
+    private TransactionTemplate txTemplate;
+
+    @Getter
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    @Qualifier("readDataSource")
+    private DataSource replicaDataSource;
+
+    @Autowired
+    private StateRepository repo;
+
+    @Autowired
+    private StateService service;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Resource setupStates = new ClassPathResource("/setup_states.sql");
+
+    @Test
+    public void test01_reads_go_to_replica_and_writes_to_primary() {
+        log.info("ENTER test01_reads_go_to_replica_and_writes_to_primary()");
+
+        JdbcTemplate replica = new JdbcTemplate(replicaDataSource);
+        try {
+            runSqlScripts(setupStates);
+            replica.execute("CREATE TABLE IF NOT EXISTS state (id VARCHAR(2) PRIMARY KEY, name VARCHAR(24),"
+                    + " code VARCHAR(2), abbr VARCHAR(6), census_region VARCHAR(9), version BIGINT)");
+            replica.update("INSERT INTO state VALUES ('CA', 'California replica', '06', 'Calif.', 'WEST', 0)");
+
+            assertThat(service.listStates()).extracting(StateView::getName).containsExactly("California replica");
+
+            State update = new State();
+            update.setId("CA");
+            update.setName("California!");
+            update.setCode("06");
+            update.setAbbr("Calif.");
+            assertThat(service.updateState("CA", update).getVersion()).isEqualTo(1);
+
+            assertThat(callWithTran(() -> repo.findForUpdateById("CA").orElseThrow().getName()))
+                    .isEqualTo("California!");
+        } finally {
+            replica.execute("DROP TABLE IF EXISTS state");
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test02_getState_after_update_is_not_cached_from_lagging_replica() {
+        log.info("ENTER test02_getState_after_update_is_not_cached_from_lagging_replica()");
+
+        JdbcTemplate replica = new JdbcTemplate(replicaDataSource);
+        try {
+            runSqlScripts(setupStates);
+            replica.execute("CREATE TABLE IF NOT EXISTS state (id VARCHAR(2) PRIMARY KEY, name VARCHAR(24),"
+                    + " code VARCHAR(2), abbr VARCHAR(6), census_region VARCHAR(9), version BIGINT)");
+            replica.update("INSERT INTO state VALUES ('TX', 'Texas', '48', 'Tex.', 'SOUTH', 0)");
+
+            State update = new State();
+            update.setId("TX");
+            update.setName("Texas!");
+            update.setCode("48");
+            update.setAbbr("Tex.");
+            service.updateState("TX", update);
+
+            // the replica has not caught up with the update, the miss reads the primary
+            double primaryReads = acquired(DataSourceConfig.PRIMARY_READ);
+            assertThat(service.getState("TX").getName()).isEqualTo("Texas!");
+            assertThat(acquired(DataSourceConfig.PRIMARY_READ)).isEqualTo(primaryReads + 1);
+            assertThat(service.getState("TX").getVersion()).isEqualTo(1);
+            assertThat(service.listStates()).extracting(StateView::getName).containsExactly("Texas");
+        } finally {
+            replica.execute("DROP TABLE IF EXISTS state");
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test03_lock_in_read_only_transaction_is_rejected() {
+        log.info("ENTER test03_lock_in_read_only_transaction_is_rejected()");
+
+        TransactionTemplate readOnlyTxTemplate = new TransactionTemplate(txTemplate.getTransactionManager());
+        readOnlyTxTemplate.setReadOnly(true);
+
+        assertThatThrownBy(() -> readOnlyTxTemplate.execute(tx -> repo.findForUpdateById("CA")))
+                .isExactlyInstanceOf(InvalidDataAccessApiUsageException.class);
+    }
+
+    private double acquired(String pool) {
+        // registered when the pool starts, on the first connection
+        Timer timer = meterRegistry.find("hikaricp.connections.acquire").tag("pool", pool).timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
@@ -0,0 +1,90 @@
+package com.nabium.examples.jpa.locking;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Test {@link StateDeletionQueue} with Embedded H2 Database.
+ */
+@Slf4j
+@TestMethodOrder(MethodOrderer.MethodName.class)
+@SpringBootTest
+public class StateDeletionQueueEmbeddedH2Test implements ConcurrentTestMixin {
+
+    @Getter
+    @Autowired
+    private TransactionTemplate txTemplate;
+
+    @Getter
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private StateDeletionQueue deletionQueue;
+
+    @Autowired
+    private StateRepository repo;
+
+    private Resource setupStates = new ClassPathResource("/setup_states.sql");
+
+    @Test
+    public void test01_submit_deletes_state_in_background() throws Exception {
+        log.info("ENTER test01_submit_deletes_state_in_background()");
+
+        try {
+            runSqlScripts(setupStates);
+
+            StateDeletion deletion = deletionQueue.submit("AL");
+            assertThat(deletion.stateId()).isEqualTo("AL");
+
+            assertThat(awaitFinished(deletion.id()).status()).isEqualTo(StateDeletion.Status.DONE);
+            assertThat(repo.existsById("AL")).isFalse();
+        } finally {
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test02_submit_of_unknown_state_fails_in_background() throws Exception {
+        log.info("ENTER test02_submit_of_unknown_state_fails_in_background()");
+
+        try {
+            runSqlScripts(setupStates);
+
+            StateDeletion deletion = awaitFinished(deletionQueue.submit("XX").id());
+            assertThat(deletion.status()).isEqualTo(StateDeletion.Status.FAILED);
+            assertThat(deletion.error()).isEqualTo(StateDeletion.ErrorCode.NOT_FOUND);
+            assertThat(deletionQueue.get("unknown")).isEmpty();
+        } finally {
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    private StateDeletion awaitFinished(String id) throws InterruptedException {
+        Instant deadline = Instant.now().plus(Duration.ofSeconds(10));
+        StateDeletion deletion = deletionQueue.get(id).orElseThrow();
+        while (!Set.of(StateDeletion.Status.DONE, StateDeletion.Status.FAILED).contains(deletion.status())
+                && Instant.now().isBefore(deadline)) {
+            Thread.sleep(50);
+            deletion = deletionQueue.get(id).orElseThrow();
+        }
+        return deletion;
+    }
+}
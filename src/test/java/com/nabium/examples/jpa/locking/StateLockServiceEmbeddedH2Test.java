@@ -0,0 +1,157 @@
+package com.nabium.examples.jpa.locking;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Test {@link StateLockService} with Embedded H2 Database.
+ */
+@Slf4j
+@TestMethodOrder(MethodOrderer.MethodName.class)
+@SpringBootTest
+public class StateLockServiceEmbeddedH2Test implements ConcurrentTestMixin {
+
+    @Getter
+    @Autowired
+    private TransactionTemplate txTemplate;
+
+    @Getter
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private StateLockService lockService;
+
+    @Autowired
+    private StateService service;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private Resource setupStates = new ClassPathResource("/setup_states.sql");
+
+    @AfterEach
+    public void clearCaches() {
+        // rows are deleted behind the cache
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    public void test01_acquire_excludes_other_owners_until_release() {
+        log.info("ENTER test01_acquire_excludes_other_owners_until_release()");
+
+        final String stateId = "AL";
+        try {
+            runSqlScripts(setupStates);
+
+            StateLease lease = lockService.acquire(stateId, "worker-1", Duration.ofMinutes(1)).orElseThrow();
+            assertThat(lockService.acquire(stateId, "worker-2", Duration.ofMinutes(1))).isEmpty();
+            assertThat(lockService.renew(lease, Duration.ofMinutes(2)).orElseThrow().expiresAt())
+                    .isAfter(lease.expiresAt());
+
+            assertThat(lockService.release(lease)).isTrue();
+            StateLease next = lockService.acquire(stateId, "worker-2", Duration.ofMinutes(1)).orElseThrow();
+            assertThat(next.token()).isGreaterThan(lease.token());
+
+            // released lease is no longer held
+            assertThat(lockService.release(lease)).isFalse();
+            assertThat(lockService.renew(lease, Duration.ofMinutes(1))).isEmpty();
+
+            assertThatThrownBy(() -> lockService.acquire("XX", "worker-1", Duration.ofMinutes(1)))
+                    .isExactlyInstanceOf(NoSuchElementException.class);
+        } finally {
+            runSqlStatements("DELETE FROM state_lock", "DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test02_updateStateWithLease_after_takeover_fails() throws Exception {
+        log.info("ENTER test02_updateStateWithLease_after_takeover_fails()");
+
+        final String stateId = "AL";
+        try {
+            runSqlScripts(setupStates);
+
+            StateLease expired = lockService.acquire(stateId, "worker-1", Duration.ofMillis(100)).orElseThrow();
+            Thread.sleep(200);
+            StateLease lease = lockService.acquire(stateId, "worker-2", Duration.ofMinutes(1)).orElseThrow();
+
+            State update = new State();
+            update.setId(stateId);
+            update.setName("Alabama!");
+            update.setCode("01");
+            update.setAbbr("Ala.");
+
+            // the fencing token of the first owner is stale
+            assertThatThrownBy(() -> service.updateStateWithLease(stateId, update, expired))
+                    .isInstanceOf(ConcurrencyFailureException.class);
+            assertThat(service.getState(stateId).getName()).isEqualTo("Alabama");
+
+            service.updateStateWithLease(stateId, update, lease);
+            assertThat(service.getState(stateId).getName()).isEqualTo("Alabama!");
+        } finally {
+            runSqlStatements("DELETE FROM state_lock", "DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test03_acquire_first_lease_concurrently_admits_one_owner() throws Exception {
+        log.info("ENTER test03_acquire_first_lease_concurrently_admits_one_owner()");
+
+        final String stateId = "WY";
+        final int owners = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(owners);
+        try {
+            runSqlScripts(setupStates);
+
+            // all of them may find no lease and insert the first one
+            CyclicBarrier barrier = new CyclicBarrier(owners);
+            List<Future<Optional<StateLease>>> futures = new ArrayList<>();
+            for (int i = 0; i < owners; i++) {
+                final String owner = "worker-" + i;
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    return lockService.acquire(stateId, owner, Duration.ofMinutes(1));
+                }));
+            }
+            List<StateLease> leases = new ArrayList<>();
+            for (Future<Optional<StateLease>> future : futures) {
+                future.get(30, TimeUnit.SECONDS).ifPresent(leases::add);
+            }
+
+            assertThat(leases).hasSize(1);
+            assertThat(leases.get(0).token()).isEqualTo(1L);
+            assertThat(leases.get(0).expiresAt()).isNotNull();
+        } finally {
+            executor.shutdownNow();
+            runSqlStatements("DELETE FROM state_lock", "DELETE FROM state");
+        }
+    }
+}
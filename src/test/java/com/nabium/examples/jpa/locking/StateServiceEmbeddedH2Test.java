@@ -0,0 +1,578 @@
+package com.nabium.examples.jpa.locking;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Before;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Test {@link StateService} with Embedded H2 Database.
+ */
+@Slf4j
+@TestMethodOrder(MethodOrderer.MethodName.class)
+@SpringBootTest(properties = {
+        // enough attempts for every writer to win eventually
+        "state.optimistic.max-attempts=100",
+        "state.local-lock.enabled=true",
+        "state.local-lock.timeout=500ms"
+})
+public class StateServiceEmbeddedH2Test implements ConcurrentTestMixin {
+
+    /**
+     * Fails the next {@code failures} calls of
+     * {@link StateRepository#findForUpdateById(String)} with a lock failure,
+     * inside of the transaction. H2 closes the connection on a real lock
+     * timeout and the rollback fails instead, see
+     * {@link LockFailureRetryPostgresTest} for real lock failures.
+     */
+    @Aspect
+    static class LockFailureInjector {
+
+        final AtomicInteger failures = new AtomicInteger();
+
+        @Before("execution(* com.nabium.examples.jpa.locking.StateRepository.findForUpdateById(..))")
+        public void fail() {
+            if (failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                throw new CannotAcquireLockException("injected lock failure");
+            }
+        }
+    }
+
+    @TestConfiguration
+    static class LockFailureInjectorConfig {
+
+        @Bean
+        LockFailureInjector lockFailureInjector() {
+            return new LockFailureInjector();
+        }
+    }
+
+    @Getter
+    @Autowired
+    private TransactionTemplate txTemplate;
+
+    @Getter
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private StateService service;
+
+    @Autowired
+    private LockFailureInjector lockFailureInjector;
+
+    @Autowired
+    private StateContentionTracker contention;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private Resource setupStates = new ClassPathResource("/setup_states.sql");
+
+    @AfterEach
+    public void clearCaches() {
+        // rows are deleted behind the cache
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    public void test01_updateState_increments_version() {
+        log.info("ENTER test01_updateState_increments_version()");
+
+        final String stateId = "AL";
+        try {
+            runSqlScripts(setupStates);
+
+            State state = copyOf(service.getState(stateId));
+            assertThat(service.getState(stateId).getVersion()).isZero();
+
+            state.setName("Alabama!");
+            service.updateState(stateId, state);
+            state.setName("Alabama!!");
+            service.updateStateOptimistic(stateId, state);
+
+            StateView updated = service.getState(stateId);
+            assertThat(updated.getName()).isEqualTo("Alabama!!");
+            assertThat(updated.getVersion()).isEqualTo(2);
+        } finally {
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test02_updateStateOptimistic_with_conflicts_retries_until_success() throws Exception {
+        log.info("ENTER test02_updateStateOptimistic_with_conflicts_retries_until_success()");
+
+        final String stateId = "AL";
+        final int writers = 4;
+        final int updates = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            runSqlScripts(setupStates);
+            StateView state = service.getState(stateId);
+
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                final int writer = i;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < updates; j++) {
+                        // each update must change the row to be written
+                        State update = copyOf(state);
+                        update.setName("Alabama " + writer + "-" + j);
+                        service.updateStateOptimistic(stateId, update);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+
+            // every update committed once, no update was lost
+            assertThat(service.getState(stateId).getVersion()).isEqualTo(writers * updates);
+        } finally {
+            executor.shutdownNow();
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test03_updateStates_updates_all_in_one_transaction() {
+        log.info("ENTER test03_updateStates_updates_all_in_one_transaction()");
+
+        try {
+            runSqlScripts(setupStates);
+
+            State wy = copyOf(service.getState("WY"));
+            wy.setName("Wyoming!");
+            State al = copyOf(service.getState("AL"));
+            al.setName("Alabama!");
+
+            List<State> updated = service.updateStates(List.of(wy, al));
+
+            assertThat(updated).extracting(State::getId).containsExactly("AL", "WY");
+            assertThat(service.getState("AL").getName()).isEqualTo("Alabama!");
+            assertThat(service.getState("WY").getName()).isEqualTo("Wyoming!");
+        } finally {
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test04_updateStates_with_unknown_state_updates_nothing() {
+        log.info("ENTER test04_updateStates_with_unknown_state_updates_nothing()");
+
+        try {
+            runSqlScripts(setupStates);
+
+            State al = copyOf(service.getState("AL"));
+            al.setName("Alabama!");
+            State unknown = copyOf(service.getState("AL"));
+            unknown.setId("XX");
+
+            assertThatThrownBy(() -> service.updateStates(List.of(al, unknown)))
+                    .isExactlyInstanceOf(NoSuchElementException.class);
+            assertThat(service.getState("AL").getName()).isEqualTo("Alabama");
+        } finally {
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test05_getState_is_cached_until_update_commits() {
+        log.info("ENTER test05_getState_is_cached_until_update_commits()");
+
+        final String stateId = "AL";
+        try {
+            runSqlScripts(setupStates);
+
+            double misses = cacheGets("miss");
+            double hits = cacheGets("hit");
+            StateView cached = service.getState(stateId);
+            assertThat(service.getState(stateId)).isSameAs(cached);
+            assertThat(cacheGets("miss")).isEqualTo(misses + 1);
+            assertThat(cacheGets("hit")).isEqualTo(hits + 1);
+
+            // rolled back update does not evict
+            State update = copyOf(cached);
+            update.setName("Alabama!");
+            runWithTran(() -> service.updateState(stateId, update), true);
+            assertThat(service.getState(stateId)).isSameAs(cached);
+
+            // committed update evicts
+            service.updateState(stateId, update);
+            assertThat(service.getState(stateId).getName()).isEqualTo("Alabama!");
+        } finally {
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test06_listStates_pages_through_all_states_in_order() {
+        log.info("ENTER test06_listStates_pages_through_all_states_in_order()");
+
+        try {
+            runSqlScripts(setupStates);
+
+            List<String> ids = new ArrayList<>();
+            List<StateView> page = service.listStates("", 20);
+            while (!page.isEmpty()) {
+                assertThat(page).hasSizeLessThanOrEqualTo(20);
+                page.forEach(state -> ids.add(state.getId()));
+                page = service.listStates(ids.get(ids.size() - 1), 20);
+            }
+
+            assertThat(ids).hasSameSizeAs(service.listStates()).isSorted().doesNotHaveDuplicates();
+        } finally {
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test07_forEachState_streams_all_states_in_order() {
+        log.info("ENTER test07_forEachState_streams_all_states_in_order()");
+
+        try {
+            runSqlScripts(setupStates);
+
+            List<String> ids = new ArrayList<>();
+            service.forEachState(state -> ids.add(state.getId()));
+
+            assertThat(ids).hasSameSizeAs(service.listStates()).isSorted().doesNotHaveDuplicates();
+        } finally {
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test08_updateState_after_lock_failure_is_retried() {
+        log.info("ENTER test08_updateState_after_lock_failure_is_retried()");
+
+        final String stateId = "AL";
+        try {
+            runSqlScripts(setupStates);
+            State update = copyOf(service.getState(stateId));
+            update.setName("Alabama!");
+            double recovered = retries("recovered");
+
+            lockFailureInjector.failures.set(1);
+            service.updateState(stateId, update);
+
+            assertThat(lockFailureInjector.failures).hasValue(0);
+            assertThat(service.getState(stateId).getName()).isEqualTo("Alabama!");
+            assertThat(service.getState(stateId).getVersion()).isEqualTo(1);
+            assertThat(retries("recovered")).isEqualTo(recovered + 1);
+        } finally {
+            lockFailureInjector.failures.set(0);
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test09_withLockedStates_in_crossed_orders_does_not_deadlock() throws Exception {
+        log.info("ENTER test09_withLockedStates_in_crossed_orders_does_not_deadlock()");
+
+        final List<List<String>> orders = List.of(List.of("AL", "WY", "TX"), List.of("TX", "WY", "AL"));
+        final int updates = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(orders.size());
+        try {
+            runSqlScripts(setupStates);
+
+            List<Future<?>> futures = new ArrayList<>();
+            for (List<String> ids : orders) {
+                // each update must change the rows to be written, names are unique
+                final String writer = String.join("-", ids);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < updates; i++) {
+                        final int update = i;
+                        // in an outer transaction, neither local locks nor retries
+                        // apply, so a deadlock in the database would fail the test
+                        txTemplate.executeWithoutResult(tx -> service.withLockedStates(ids, states -> {
+                            assertThat(states).containsOnlyKeys(ids);
+                            states.values().forEach(state -> state.setName(
+                                    state.getId() + " " + writer + " " + update));
+                            sleep(5);
+                            return null;
+                        }));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+
+            assertThat(service.getState("WY").getVersion()).isEqualTo(orders.size() * updates);
+            assertThat(service.getState("AL").getName()).startsWith("AL ");
+            assertThatThrownBy(() -> service.withLockedStates(List.of("AL", "XX"), states -> null))
+                    .isExactlyInstanceOf(NoSuchElementException.class);
+        } finally {
+            executor.shutdownNow();
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test10_updateState_of_hot_state_waits_in_local_lock() throws Exception {
+        log.info("ENTER test10_updateState_of_hot_state_waits_in_local_lock()");
+
+        final String stateId = "AL";
+        final int writers = 16;
+        final int updates = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            runSqlScripts(setupStates);
+            StateView state = service.getState(stateId);
+            double timeouts = lockWaits("timeout");
+
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                final int writer = i;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < updates; j++) {
+                        // each update must change the row to be written
+                        State update = copyOf(state);
+                        update.setName("Alabama " + writer + "-" + j);
+                        service.updateState(stateId, update);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+
+            // writers queued in memory, none of them waited on the row lock
+            assertThat(service.getState(stateId).getVersion()).isEqualTo(writers * updates);
+            assertThat(lockWaits("timeout")).isEqualTo(timeouts);
+        } finally {
+            executor.shutdownNow();
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    private double lockWaits(String outcome) {
+        Timer timer = meterRegistry.find(LockMetricsAspect.METRIC)
+                .tag("method", "findForUpdateById")
+                .tag("outcome", outcome)
+                .timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    @Test
+    public void test11_getState_coalesces_concurrent_misses() throws Exception {
+        log.info("ENTER test11_getState_coalesces_concurrent_misses()");
+
+        final String stateId = "CA";
+        final int callers = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            runSqlScripts(setupStates);
+            double misses = cacheGets("miss");
+
+            CyclicBarrier barrier = new CyclicBarrier(callers);
+            List<Future<StateView>> futures = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    return service.getState(stateId);
+                }));
+            }
+            StateView loaded = futures.get(0).get(30, TimeUnit.SECONDS);
+            for (Future<StateView> future : futures) {
+                assertThat(future.get(30, TimeUnit.SECONDS)).isSameAs(loaded);
+            }
+
+            // only one of the callers loaded the state
+            assertThat(cacheGets("miss")).isEqualTo(misses + 1);
+        } finally {
+            executor.shutdownNow();
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test12_deleteAllStates_deletes_in_bulk_or_in_chunks() {
+        log.info("ENTER test12_deleteAllStates_deletes_in_bulk_or_in_chunks()");
+
+        try {
+            runSqlScripts(setupStates);
+            int states = service.listStates().size();
+            assertThat(service.deleteAllStates()).isEqualTo(states);
+            assertThat(service.listStates()).isEmpty();
+
+            runSqlScripts(setupStates);
+            assertThat(service.deleteAllStates(10)).isEqualTo(states);
+            assertThat(service.listStates()).isEmpty();
+        } finally {
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test13_updateStateAdaptive_switches_to_blocking_under_contention() throws Exception {
+        log.info("ENTER test13_updateStateAdaptive_switches_to_blocking_under_contention()");
+
+        final String stateId = "AK";
+        final int writers = 4;
+        final int updates = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            runSqlScripts(setupStates);
+            StateView state = service.getState(stateId);
+            assertThat(contention.strategyOf(stateId)).isEqualTo(StateContentionTracker.Strategy.OPTIMISTIC);
+
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                final int writer = i;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < updates; j++) {
+                        State update = copyOf(state);
+                        update.setName("Alaska " + writer + "-" + j);
+                        service.updateStateAdaptive(stateId, update);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+
+            // writers waited in the local lock or fell back to the row lock, no update was lost
+            assertThat(service.getState(stateId).getVersion()).isEqualTo(writers * updates);
+
+            for (int i = 0; i < 10; i++) {
+                contention.recordConflict(stateId);
+            }
+            double blocking = adaptive("blocking");
+            State update = copyOf(service.getState(stateId));
+            update.setName("Alaska");
+            service.updateStateAdaptive(stateId, update);
+            assertThat(adaptive("blocking")).isEqualTo(blocking + 1);
+            assertThat(service.getState(stateId).getName()).isEqualTo("Alaska");
+        } finally {
+            executor.shutdownNow();
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test14_updateState_gives_up_waiting_in_local_lock() throws Exception {
+        log.info("ENTER test14_updateState_gives_up_waiting_in_local_lock()");
+
+        final String stateId = "WY";
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            runSqlScripts(setupStates);
+            State update = copyOf(service.getState(stateId));
+            update.setName("Wyoming!");
+            double exhausted = retries("exhausted");
+
+            // holds the local lock longer than all attempts wait for it
+            CountDownLatch locked = new CountDownLatch(1);
+            Future<?> holder = executor.submit(() -> service.withLockedStates(List.of(stateId), states -> {
+                locked.countDown();
+                sleep(3000);
+                return null;
+            }));
+            assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+
+            assertThatThrownBy(() -> service.updateState(stateId, update))
+                    .isInstanceOf(CannotAcquireLockException.class);
+            assertThat(retries("exhausted")).isEqualTo(exhausted + 1);
+            holder.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test15_withLockedStates_evicts_only_locked_states() {
+        log.info("ENTER test15_withLockedStates_evicts_only_locked_states()");
+
+        try {
+            runSqlScripts(setupStates);
+            service.getState("CA");
+            service.getState("TX");
+
+            service.withLockedStates(List.of("CA"), states -> {
+                states.get("CA").setName("California!");
+                return null;
+            });
+
+            double hits = cacheGets("hit");
+            assertThat(service.getState("TX").getName()).isEqualTo("Texas");
+            assertThat(cacheGets("hit")).isEqualTo(hits + 1);
+            assertThat(service.getState("CA").getName()).isEqualTo("California!");
+            assertThat(cacheGets("hit")).isEqualTo(hits + 1);
+        } finally {
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private double retries(String outcome) {
+        return meterRegistry.counter(LockFailureRetryAspect.METRIC,
+                "method", "updateState", "outcome", outcome).count();
+    }
+
+    private double adaptive(String strategy) {
+        return meterRegistry.counter(StateContentionTracker.METRIC, "strategy", strategy).count();
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets")
+                .tag("cache", CacheConfig.STATES)
+                .tag("result", result)
+                .functionCounter()
+                .count();
+    }
+
+    private static State copyOf(StateView state) {
+        State copy = new State();
+        copy.setId(state.getId());
+        copy.setName(state.getName());
+        copy.setCode(state.getCode());
+        copy.setAbbr(state.getAbbr());
+        copy.setCensusRegion(state.getCensusRegion());
+        return copy;
+    }
+}
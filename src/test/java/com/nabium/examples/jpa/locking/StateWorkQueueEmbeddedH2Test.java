@@ -0,0 +1,104 @@
+package com.nabium.examples.jpa.locking;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Test {@link StateWorkQueue} with Embedded H2 Database.
+ */
+@Slf4j
+@TestMethodOrder(MethodOrderer.MethodName.class)
+@SpringBootTest(properties = {
+        "state.work.batch-size=3",
+        "state.work.workers=2",
+        "state.work.poll-interval=100ms"
+})
+public class StateWorkQueueEmbeddedH2Test implements ConcurrentTestMixin {
+
+    @Getter
+    @Autowired
+    private TransactionTemplate txTemplate;
+
+    @Getter
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private StateRepository repo;
+
+    @Autowired
+    private StateWorkQueue queue;
+
+    private Resource setupStates = new ClassPathResource("/setup_states.sql");
+
+    @Test
+    public void test01_claimAndProcess_claims_up_to_batch_size() {
+        log.info("ENTER test01_claimAndProcess_claims_up_to_batch_size()");
+
+        final CensusRegion region = CensusRegion.NORTHEAST;
+        try {
+            runSqlScripts(setupStates);
+            final int count = repo.countByCensusRegion(region);
+
+            // the handler takes the rows out of the queue
+            int claimed = queue.claimAndProcess(region, repo::delete);
+
+            assertThat(claimed).isEqualTo(3);
+            assertThat(repo.countByCensusRegion(region)).isEqualTo(count - 3);
+        } finally {
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test02_dispatcher_drains_region() throws Exception {
+        log.info("ENTER test02_dispatcher_drains_region()");
+
+        final CensusRegion region = CensusRegion.WEST;
+        try {
+            runSqlScripts(setupStates);
+            final List<String> ids = repo.findAll().stream()
+                    .filter(state -> state.getCensusRegion() == region)
+                    .map(State::getId)
+                    .toList();
+
+            Queue<String> processed = new ConcurrentLinkedQueue<>();
+            try (StateWorkDispatcher dispatcher = queue.dispatcher(region, state -> {
+                processed.add(state.getId());
+                repo.delete(state);
+            })) {
+                dispatcher.start();
+
+                Instant deadline = Instant.now().plus(Duration.ofSeconds(10));
+                while (repo.countByCensusRegion(region) > 0 && Instant.now().isBefore(deadline)) {
+                    Thread.sleep(100);
+                }
+            }
+
+            // every row processed exactly once
+            assertThat(processed).containsExactlyInAnyOrderElementsOf(ids);
+            assertThat(repo.countByCensusRegion(region)).isZero();
+        } finally {
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.nabium.examples.jpa.locking;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Test {@link StateWorkQueue} with PostgreSQL, where {@code SKIP LOCKED}
+ * skips rows locked by other claimers instead of waiting for them.
+ */
+@Slf4j
+@Testcontainers
+@TestMethodOrder(MethodOrderer.MethodName.class)
+@SpringBootTest(properties = {
+        "state.work.batch-size=3"
+})
+public class StateWorkQueuePostgresTest implements ConcurrentTestMixin {
+
+    @Getter
+    @Autowired
+    private TransactionTemplate txTemplate;
+
+    @Getter
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private StateRepository repo;
+
+    @Autowired
+    private StateService service;
+
+    @Autowired
+    private StateWorkQueue queue;
+
+    private Resource setupStates = new ClassPathResource("/setup_states.sql");
+
+    @Container
+    static PostgreSQLContainer<?> pgsql = new PostgreSQLContainer<>("postgres:16");
+
+    @DynamicPropertySource
+    static void pgsqlProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", pgsql::getJdbcUrl);
+        registry.add("spring.datasource.username", pgsql::getUsername);
+        registry.add("spring.datasource.password", pgsql::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+    }
+
+    @Test
+    public void test01_claimAndProcess_does_not_wait_for_other_claimers() throws Exception {
+        log.info("ENTER test01_claimAndProcess_does_not_wait_for_other_claimers()");
+
+        final CensusRegion region = CensusRegion.NORTHEAST;
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            runSqlScripts(setupStates);
+
+            // the first claimer holds its batch for a second
+            Queue<String> first = new ConcurrentLinkedQueue<>();
+            CountDownLatch claimed = new CountDownLatch(1);
+            Future<Integer> holder = executor.submit(() -> queue.claimAndProcess(region, state -> {
+                first.add(state.getId());
+                claimed.countDown();
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertThat(claimed.await(10, TimeUnit.SECONDS)).isTrue();
+
+            Queue<String> second = new ConcurrentLinkedQueue<>();
+            Instant started = Instant.now();
+            int count = queue.claimAndProcess(region, state -> second.add(state.getId()));
+            Duration elapsed = Duration.between(started, Instant.now());
+
+            assertThat(holder.get(10, TimeUnit.SECONDS)).isEqualTo(3);
+            assertThat(count).isEqualTo(3);
+            assertThat(elapsed).isLessThan(Duration.ofMillis(500));
+            assertThat(second).doesNotContainAnyElementsOf(first);
+        } finally {
+            executor.shutdownNow();
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test02_claimAndProcess_evicts_claimed_states() {
+        log.info("ENTER test02_claimAndProcess_evicts_claimed_states()");
+
+        final CensusRegion region = CensusRegion.WEST;
+        try {
+            runSqlScripts(setupStates);
+            List<String> ids = repo.findAll().stream()
+                    .filter(state -> state.getCensusRegion() == region)
+                    .map(State::getId)
+                    .sorted()
+                    .limit(3)
+                    .toList();
+            ids.forEach(service::getState);
+
+            queue.claimAndProcess(region, state -> state.setAbbr(state.getId() + "!"));
+
+            for (String id : ids) {
+                assertThat(service.getState(id).getAbbr()).isEqualTo(id + "!");
+            }
+        } finally {
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.nabium.examples.jpa.locking;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Test {@link StateWriteBuffer} with Embedded H2 Database.
+ */
+@Slf4j
+@TestMethodOrder(MethodOrderer.MethodName.class)
+@SpringBootTest(properties = {
+        // flushed by the tests only
+        "state.write-behind.flush-interval=1h",
+        // shorter than the locks held in test04
+        "spring.datasource.url=jdbc:h2:mem:writebehind;LOCK_TIMEOUT=500;DB_CLOSE_ON_EXIT=FALSE"
+})
+public class StateWriteBufferEmbeddedH2Test implements ConcurrentTestMixin {
+
+    @TestConfiguration
+    static class ListenerConfig {
+
+        @Bean
+        RecordingListener recordingListener() {
+            return new RecordingListener();
+        }
+    }
+
+    static class RecordingListener implements StateWriteBehindListener {
+
+        final List<State> flushed = new CopyOnWriteArrayList<>();
+
+        final List<State> failed = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onFlushed(List<State> states) {
+            flushed.addAll(states);
+        }
+
+        @Override
+        public void onFailed(List<State> states, RuntimeException e) {
+            failed.addAll(states);
+        }
+    }
+
+    @Getter
+    @Autowired
+    private TransactionTemplate txTemplate;
+
+    @Getter
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private StateWriteBuffer writeBuffer;
+
+    @Autowired
+    private StateRepository repo;
+
+    @Autowired
+    private RecordingListener listener;
+
+    private Resource setupStates = new ClassPathResource("/setup_states.sql");
+
+    @AfterEach
+    public void clearListener() {
+        listener.flushed.clear();
+        listener.failed.clear();
+    }
+
+    @Test
+    public void test01_flush_writes_merged_updates_once_per_state() {
+        log.info("ENTER test01_flush_writes_merged_updates_once_per_state()");
+
+        try {
+            runSqlScripts(setupStates);
+            State alabama = repo.findById("AL").orElseThrow();
+
+            for (int i = 0; i < 100; i++) {
+                writeBuffer.buffer("AL", update("AL", "Alabama " + i, null));
+            }
+            writeBuffer.buffer("AK", update("AK", "Alaska!", null));
+            writeBuffer.buffer("AK", update("AK", null, "Alas."));
+            assertThat(writeBuffer.pending()).isEqualTo(2);
+
+            assertThat(writeBuffer.flush()).isEqualTo(2);
+            assertThat(writeBuffer.pending()).isZero();
+            assertThat(listener.flushed).extracting(State::getId).containsExactlyInAnyOrder("AL", "AK");
+
+            // last write wins, per field, in one update of each row
+            State al = repo.findById("AL").orElseThrow();
+            assertThat(al.getName()).isEqualTo("Alabama 99");
+            assertThat(al.getAbbr()).isEqualTo(alabama.getAbbr());
+            assertThat(al.getVersion()).isEqualTo(alabama.getVersion() + 1);
+            State ak = repo.findById("AK").orElseThrow();
+            assertThat(ak.getName()).isEqualTo("Alaska!");
+            assertThat(ak.getAbbr()).isEqualTo("Alas.");
+        } finally {
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test02_buffer_of_unknown_state_is_rejected() {
+        log.info("ENTER test02_buffer_of_unknown_state_is_rejected()");
+
+        try {
+            runSqlScripts(setupStates);
+
+            assertThatThrownBy(() -> writeBuffer.buffer("XX", update("XX", "Unknown", null)))
+                    .isExactlyInstanceOf(NoSuchElementException.class);
+            assertThat(writeBuffer.pending()).isZero();
+        } finally {
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test03_flush_drops_deleted_state_and_writes_the_others() {
+        log.info("ENTER test03_flush_drops_deleted_state_and_writes_the_others()");
+
+        try {
+            runSqlScripts(setupStates);
+
+            writeBuffer.buffer("AL", update("AL", "Alabama!", null));
+            writeBuffer.buffer("AK", update("AK", "Alaska!", null));
+            runSqlStatements("DELETE FROM state WHERE id = 'AK'");
+
+            assertThat(writeBuffer.flush()).isEqualTo(1);
+            assertThat(writeBuffer.pending()).isZero();
+            assertThat(listener.flushed).extracting(State::getId).containsExactly("AL");
+            assertThat(listener.failed).extracting(State::getId).containsExactly("AK");
+            assertThat(repo.findById("AL").orElseThrow().getName()).isEqualTo("Alabama!");
+        } finally {
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    @Test
+    public void test04_flush_buffers_locked_state_again() throws Exception {
+        log.info("ENTER test04_flush_buffers_locked_state_again()");
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            runSqlScripts(setupStates);
+
+            writeBuffer.buffer("AL", update("AL", "Alabama!", null));
+            writeBuffer.buffer("AK", update("AK", "Alaska!", null));
+
+            // holds the row lock longer than the batch and AL alone wait for it
+            CountDownLatch locked = new CountDownLatch(1);
+            Future<?> holder = submitWithTran(executor, () -> {
+                repo.findForUpdateById("AL").orElseThrow();
+                locked.countDown();
+                Thread.sleep(2000);
+                return null;
+            });
+            assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(writeBuffer.flush()).isEqualTo(1);
+            assertThat(writeBuffer.pending()).isEqualTo(1);
+            assertThat(listener.flushed).extracting(State::getId).containsExactly("AK");
+            holder.get(10, TimeUnit.SECONDS);
+
+            assertThat(writeBuffer.flush()).isEqualTo(1);
+            assertThat(listener.flushed).extracting(State::getId).containsExactly("AK", "AL");
+            assertThat(listener.failed).isEmpty();
+            assertThat(repo.findById("AL").orElseThrow().getName()).isEqualTo("Alabama!");
+        } finally {
+            executor.shutdownNow();
+            runSqlStatements("DELETE FROM state");
+        }
+    }
+
+    private static State update(String id, String name, String abbr) {
+        State state = new State();
+        state.setId(id);
+        state.setName(name);
+        state.setAbbr(abbr);
+        return state;
+    }
+}
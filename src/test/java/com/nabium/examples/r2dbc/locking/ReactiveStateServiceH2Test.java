@@ -0,0 +1,130 @@
+package com.nabium.examples.r2dbc.locking;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.nabium.examples.jpa.locking.CensusRegion;
+
+import io.r2dbc.spi.ConnectionFactory;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+/**
+ * Test {@link ReactiveStateService} with R2DBC H2.
+ */
+@Slf4j
+@TestMethodOrder(MethodOrderer.MethodName.class)
+@SpringBootTest(properties = "spring.main.web-application-type=reactive")
+public class ReactiveStateServiceH2Test {
+
+    @Autowired
+    private ConnectionFactory connectionFactory;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private TransactionalOperator txOperator;
+
+    @Autowired
+    private ReactiveStateRepository repo;
+
+    @Autowired
+    private ReactiveStateService service;
+
+    @BeforeEach
+    public void setUpStates() {
+        new ResourceDatabasePopulator(new ClassPathResource("/setup_states.sql"))
+                .populate(connectionFactory)
+                .block();
+    }
+
+    @AfterEach
+    public void tearDownStates() {
+        databaseClient.sql("DELETE FROM state").then().block();
+    }
+
+    @Test
+    public void test01_updateState_increments_version() {
+        log.info("ENTER test01_updateState_increments_version()");
+
+        StateRow state = service.getState("AL").block();
+        state.setName("Alabama!");
+
+        StepVerifier.create(service.updateState("AL", state))
+                .assertNext(updated -> assertThat(updated.getVersion()).isEqualTo(1))
+                .verifyComplete();
+        assertThat(service.getState("AL").block().getName()).isEqualTo("Alabama!");
+    }
+
+    @Test
+    public void test02_concurrent_updateState_waits_for_row_lock() {
+        log.info("ENTER test02_concurrent_updateState_waits_for_row_lock()");
+
+        final int writers = 4;
+        StateRow state = service.getState("AL").block();
+
+        List<Mono<StateRow>> updates = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            StateRow update = new StateRow();
+            update.setId(state.getId());
+            update.setName("Alabama " + i);
+            update.setCode(state.getCode());
+            update.setAbbr(state.getAbbr());
+            // r2dbc-h2 blocks the subscribing thread while waiting for the lock
+            updates.add(service.updateState("AL", update).subscribeOn(Schedulers.boundedElastic()));
+        }
+        Flux.merge(updates).then().block(Duration.ofSeconds(30));
+
+        // every update locked the row, none of them was lost
+        assertThat(service.getState("AL").block().getVersion()).isEqualTo(writers);
+    }
+
+    @Test
+    public void test03_claimAndProcess_claims_states_of_region() {
+        log.info("ENTER test03_claimAndProcess_claims_states_of_region()");
+
+        List<String> claimed = new ArrayList<>();
+        StepVerifier.create(service.claimAndProcess(CensusRegion.WEST, 5,
+                state -> repo.delete(state).doOnSuccess(v -> claimed.add(state.getId()))))
+                .expectNext(5L)
+                .verifyComplete();
+
+        assertThat(claimed).hasSize(5).isSorted();
+        StepVerifier.create(repo.findAllById(claimed)).verifyComplete();
+    }
+
+    @Test
+    public void test04_findForUpdateById_in_rolled_back_transaction_changes_nothing() {
+        log.info("ENTER test04_findForUpdateById_in_rolled_back_transaction_changes_nothing()");
+
+        StepVerifier.create(repo.findForUpdateById("AL")
+                .flatMap(state -> {
+                    state.setName("Alabama!");
+                    return repo.save(state);
+                })
+                .then(Mono.error(new IllegalStateException("rollback")))
+                .as(txOperator::transactional))
+                .verifyError(IllegalStateException.class);
+
+        assertThat(service.getState("AL").block().getName()).isEqualTo("Alabama");
+    }
+}
@@ -1,168 +1,168 @@
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Alabama', 'AL', '01', 'Ala.', 'SOUTH'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Alabama', 'AL', '01', 'Ala.', 'SOUTH', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Alaska', 'AK', '02', 'Alaska', 'WEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Alaska', 'AK', '02', 'Alaska', 'WEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Arizona', 'AZ', '04', 'Ariz.', 'WEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Arizona', 'AZ', '04', 'Ariz.', 'WEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Arkansas', 'AR', '05', 'Ark.', 'SOUTH'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Arkansas', 'AR', '05', 'Ark.', 'SOUTH', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'California', 'CA', '06', 'Calif.', 'WEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'California', 'CA', '06', 'Calif.', 'WEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Colorado', 'CO', '08', 'Colo.', 'WEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Colorado', 'CO', '08', 'Colo.', 'WEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Connecticut', 'CT', '09', 'Conn.', 'NORTHEAST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Connecticut', 'CT', '09', 'Conn.', 'NORTHEAST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Delaware', 'DE', '10', 'Del.', 'SOUTH'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Delaware', 'DE', '10', 'Del.', 'SOUTH', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'District of Columbia', 'DC', '11', 'D.C.', 'SOUTH'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'District of Columbia', 'DC', '11', 'D.C.', 'SOUTH', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Florida', 'FL', '12', 'Fla.', 'SOUTH'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Florida', 'FL', '12', 'Fla.', 'SOUTH', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Georgia', 'GA', '13', 'Ga.', 'SOUTH'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Georgia', 'GA', '13', 'Ga.', 'SOUTH', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Hawaii', 'HI', '15', 'Hawaii', 'WEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Hawaii', 'HI', '15', 'Hawaii', 'WEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Idaho', 'ID', '16', 'Idaho', 'WEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Idaho', 'ID', '16', 'Idaho', 'WEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Illinois', 'IL', '17', 'Ill.', 'MIDWEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Illinois', 'IL', '17', 'Ill.', 'MIDWEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Indiana', 'IN', '18', 'Ind.', 'MIDWEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Indiana', 'IN', '18', 'Ind.', 'MIDWEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Iowa', 'IA', '19', 'Iowa', 'MIDWEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Iowa', 'IA', '19', 'Iowa', 'MIDWEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Kansas', 'KS', '20', 'Kan.', 'MIDWEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Kansas', 'KS', '20', 'Kan.', 'MIDWEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Kentucky', 'KY', '21', 'Ky.', 'SOUTH'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Kentucky', 'KY', '21', 'Ky.', 'SOUTH', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Louisiana', 'LA', '22', 'La.', 'SOUTH'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Louisiana', 'LA', '22', 'La.', 'SOUTH', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Maine', 'ME', '23', 'Maine', 'NORTHEAST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Maine', 'ME', '23', 'Maine', 'NORTHEAST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Maryland', 'MD', '24', 'Md.', 'SOUTH'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Maryland', 'MD', '24', 'Md.', 'SOUTH', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Massachusetts', 'MA', '25', 'Mass.', 'NORTHEAST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Massachusetts', 'MA', '25', 'Mass.', 'NORTHEAST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Michigan', 'MI', '26', 'Mich.', 'MIDWEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Michigan', 'MI', '26', 'Mich.', 'MIDWEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Minnesota', 'MN', '27', 'Minn.', 'MIDWEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Minnesota', 'MN', '27', 'Minn.', 'MIDWEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Mississippi', 'MS', '28', 'Miss.', 'SOUTH'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Mississippi', 'MS', '28', 'Miss.', 'SOUTH', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Missouri', 'MO', '29', 'Mo.', 'MIDWEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Missouri', 'MO', '29', 'Mo.', 'MIDWEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Montana', 'MT', '30', 'Mont.', 'WEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Montana', 'MT', '30', 'Mont.', 'WEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Nebraska', 'NE', '31', 'Neb.', 'MIDWEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Nebraska', 'NE', '31', 'Neb.', 'MIDWEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Nevada', 'NV', '32', 'Nev.', 'WEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Nevada', 'NV', '32', 'Nev.', 'WEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'New Hampshire', 'NH', '33', 'N.H.', 'NORTHEAST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'New Hampshire', 'NH', '33', 'N.H.', 'NORTHEAST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'New Jersey', 'NJ', '34', 'N.J.', 'NORTHEAST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'New Jersey', 'NJ', '34', 'N.J.', 'NORTHEAST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'New Mexico', 'NM', '35', 'N.M.', 'WEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'New Mexico', 'NM', '35', 'N.M.', 'WEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'New York', 'NY', '36', 'N.Y.', 'NORTHEAST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'New York', 'NY', '36', 'N.Y.', 'NORTHEAST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'North Carolina', 'NC', '37', 'N.C.', 'SOUTH'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'North Carolina', 'NC', '37', 'N.C.', 'SOUTH', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'North Dakota', 'ND', '38', 'N.D.', 'MIDWEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'North Dakota', 'ND', '38', 'N.D.', 'MIDWEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Ohio', 'OH', '39', 'Ohio', 'MIDWEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Ohio', 'OH', '39', 'Ohio', 'MIDWEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Oklahoma', 'OK', '40', 'Okla.', 'SOUTH'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Oklahoma', 'OK', '40', 'Okla.', 'SOUTH', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Oregon', 'OR', '41', 'Ore.', 'WEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Oregon', 'OR', '41', 'Ore.', 'WEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Pennsylvania', 'PA', '42', 'Pa.', 'NORTHEAST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Pennsylvania', 'PA', '42', 'Pa.', 'NORTHEAST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Rhode Island', 'RI', '44', 'R.I.', 'NORTHEAST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Rhode Island', 'RI', '44', 'R.I.', 'NORTHEAST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'South Carolina', 'SC', '45', 'S.C.', 'SOUTH'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'South Carolina', 'SC', '45', 'S.C.', 'SOUTH', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'South Dakota', 'SD', '46', 'S.D.', 'MIDWEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'South Dakota', 'SD', '46', 'S.D.', 'MIDWEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Tennessee', 'TN', '47', 'Tenn.', 'SOUTH'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Tennessee', 'TN', '47', 'Tenn.', 'SOUTH', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Texas', 'TX', '48', 'Texas', 'SOUTH'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Texas', 'TX', '48', 'Texas', 'SOUTH', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Utah', 'UT', '49', 'Utah', 'WEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Utah', 'UT', '49', 'Utah', 'WEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Vermont', 'VT', '50', 'Vt.', 'NORTHEAST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Vermont', 'VT', '50', 'Vt.', 'NORTHEAST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Virginia', 'VA', '51', 'Va.', 'SOUTH'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Virginia', 'VA', '51', 'Va.', 'SOUTH', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Washington', 'WA', '53', 'Wash.', 'WEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Washington', 'WA', '53', 'Wash.', 'WEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'West Virginia', 'WV', '54', 'W.Va.', 'SOUTH'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'West Virginia', 'WV', '54', 'W.Va.', 'SOUTH', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Wisconsin', 'WI', '55', 'Wis.', 'MIDWEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Wisconsin', 'WI', '55', 'Wis.', 'MIDWEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Wyoming', 'WY', '56', 'Wyo.', 'WEST'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Wyoming', 'WY', '56', 'Wyo.', 'WEST', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'American Samoa', 'AS', '60', 'A.S.', 'NA'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'American Samoa', 'AS', '60', 'A.S.', 'NA', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Guam', 'GU', '66', 'Guam', 'NA'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Guam', 'GU', '66', 'Guam', 'NA', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Northern Mariana Islands', 'MP', '69', 'M.P.', 'NA'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Northern Mariana Islands', 'MP', '69', 'M.P.', 'NA', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Puerto Rico', 'PR', '72', 'P.R.', 'NA'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Puerto Rico', 'PR', '72', 'P.R.', 'NA', 0
 );
-INSERT INTO state (name, id, code, abbr, census_region) VALUES (
-    'Virgin Islands', 'VI', '78', 'V.I.', 'NA'
+INSERT INTO state (name, id, code, abbr, census_region, version) VALUES (
+    'Virgin Islands', 'VI', '78', 'V.I.', 'NA', 0
 );